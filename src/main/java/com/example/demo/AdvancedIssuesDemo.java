@@ -3,12 +3,18 @@ package com.example.demo;
 import java.util.*;
 import java.util.concurrent.*;
 import java.lang.reflect.*;
+import java.util.function.ToIntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * 包含更高级和微妙代码问题的演示类
  */
 public class AdvancedIssuesDemo {
     
+    private static final Logger logger = LoggerFactory.getLogger(AdvancedIssuesDemo.class);
+    
     /**
      * 1. 单例模式的线程安全问题
      */
@@ -18,7 +24,9 @@ public class AdvancedIssuesDemo {
         public static UnsafeSingleton getInstance() {
             // 双重检查锁定的错误实现
             if (instance == null) {
+                DemoEvents.LockAcquireEvent wait = DemoEvents.beginLock("UnsafeSingleton.class");
                 synchronized (UnsafeSingleton.class) {
+                    DemoEvents.lockAcquired(wait);
                     if (instance == null) {
                         instance = new UnsafeSingleton();
                     }
@@ -77,13 +85,14 @@ public class AdvancedIssuesDemo {
     public void problematicThreadPoolUsage() {
         // 创建无界线程池，可能导致资源耗尽
         ExecutorService executor = Executors.newCachedThreadPool();
+        ProblematicPools.track((ThreadPoolExecutor) executor);
         
         for (int i = 0; i < 10000; i++) {
             final int taskId = i;
             executor.submit(() -> {
                 try {
                     Thread.sleep(10000); // 长时间运行的任务
-                    System.out.println("Task " + taskId + " completed");
+                    logger.info("Task {} completed", taskId);
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                 }
@@ -94,6 +103,32 @@ public class AdvancedIssuesDemo {
         // executor.shutdown();
     }
     
+    // 指标只注册一次，统计所有由上面方法创建的线程池；弱引用不会让线程池因指标而无法回收
+    private static final class ProblematicPools {
+        static final Set<ThreadPoolExecutor> POOLS = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<>()));
+        
+        static {
+            MetricsRegistry metrics = MetricsRegistry.getDefault();
+            metrics.gauge("executor.problematicThreadPool.active", () -> sum(ThreadPoolExecutor::getActiveCount));
+            metrics.gauge("executor.problematicThreadPool.poolSize", () -> sum(ThreadPoolExecutor::getPoolSize));
+        }
+        
+        static void track(ThreadPoolExecutor pool) {
+            POOLS.add(pool);
+        }
+        
+        private static long sum(ToIntFunction<ThreadPoolExecutor> stat) {
+            long total = 0;
+            synchronized (POOLS) {
+                for (ThreadPoolExecutor pool : POOLS) {
+                    total += stat.applyAsInt(pool);
+                }
+            }
+            return total;
+        }
+    }
+    
     /**
      * 5. 不当的锁使用
      */
@@ -101,7 +136,9 @@ public class AdvancedIssuesDemo {
     private final Object lock2 = new Object();
     
     public void potentialDeadlock1() {
+        DemoEvents.LockAcquireEvent outerWait = DemoEvents.beginLock("AdvancedIssuesDemo.lock1");
         synchronized (lock1) {
+            DemoEvents.lockAcquired(outerWait);
             System.out.println("Thread acquired lock1");
             try {
                 Thread.sleep(100);
@@ -109,7 +146,9 @@ public class AdvancedIssuesDemo {
                 Thread.currentThread().interrupt();
             }
             
+            DemoEvents.LockAcquireEvent innerWait = DemoEvents.beginLock("AdvancedIssuesDemo.lock2");
             synchronized (lock2) {
+                DemoEvents.lockAcquired(innerWait);
                 System.out.println("Thread acquired lock2");
             }
         }
@@ -117,7 +156,9 @@ public class AdvancedIssuesDemo {
     
     public void potentialDeadlock2() {
         // 与上面方法不同的锁获取顺序，可能导致死锁
+        DemoEvents.LockAcquireEvent outerWait = DemoEvents.beginLock("AdvancedIssuesDemo.lock2");
         synchronized (lock2) {
+            DemoEvents.lockAcquired(outerWait);
             System.out.println("Thread acquired lock2");
             try {
                 Thread.sleep(100);
@@ -125,7 +166,9 @@ public class AdvancedIssuesDemo {
                 Thread.currentThread().interrupt();
             }
             
+            DemoEvents.LockAcquireEvent innerWait = DemoEvents.beginLock("AdvancedIssuesDemo.lock1");
             synchronized (lock1) {
+                DemoEvents.lockAcquired(innerWait);
                 System.out.println("Thread acquired lock1");
             }
         }
@@ -163,8 +206,16 @@ public class AdvancedIssuesDemo {
     /**
      * 8. 内部类的内存泄漏
      */
-    public class InnerClassMemoryLeak {
-        private byte[] largeData = new byte[1024 * 1024]; // 1MB
+    public class InnerClassMemoryLeak implements AutoCloseable {
+        // 1MB缓冲区从堆外缓冲池租用，不再在堆上分配巨型数组
+        private final DirectBufferPool.Lease largeData = DirectBufferPool.getDefault().acquire(1024 * 1024);
+        // 忘记关闭时在实例被回收后把缓冲区还给池；释放动作只引用租约，不引用实例
+        private final ResourceCleaner.Handle handle = ResourceCleaner.getDefault().register(this, largeData::release);
+        
+        @Override
+        public void close() {
+            handle.close();
+        }
         
         public Runnable createRunnable() {
             // 非静态内部类持有外部类引用，可能导致内存泄漏
@@ -178,19 +229,27 @@ public class AdvancedIssuesDemo {
     }
     
     /**
-     * 9. 不正确的克隆实现
+     * 9. 克隆实现：items 是不可变的持久化向量，浅拷贝即可安全共享，克隆为O(1)
      */
     public static class ShallowCloneIssue implements Cloneable {
-        private List<String> items = new ArrayList<>();
+        private PersistentVector<String> items = PersistentVector.empty();
         
         public ShallowCloneIssue(List<String> items) {
-            this.items = items;
+            this.items = PersistentVector.of(items);
         }
         
         @Override
-        protected Object clone() throws CloneNotSupportedException {
-            // 浅拷贝，修改克隆对象会影响原对象
-            return super.clone();
+        protected ShallowCloneIssue clone() throws CloneNotSupportedException {
+            // 共享的是不可变结构，修改克隆对象只会替换它自己的引用
+            return (ShallowCloneIssue) super.clone();
+        }
+        
+        public void addItem(String item) {
+            items = items.plus(item);
+        }
+        
+        public void setItem(int index, String item) {
+            items = items.with(index, item);
         }
         
         public List<String> getItems() {
@@ -199,41 +258,38 @@ public class AdvancedIssuesDemo {
     }
     
     /**
-     * 10. 不当的finalize使用
+     * 10. 资源清理：不再依赖finalize()，改为显式close()，Cleaner只做兜底
      */
-    public static class BadFinalize {
+    public static class BadFinalize implements AutoCloseable {
+        // 释放动作是静态方法引用，不持有this，所有者才能被正常回收
+        private final ResourceCleaner.Handle handle =
+            ResourceCleaner.getDefault().register(this, BadFinalize::release);
+        
+        private static void release() {
+            logger.debug("Finalizing...");
+        }
+        
+        public boolean isClosed() {
+            return handle.isClosed();
+        }
+        
         @Override
-        protected void finalize() throws Throwable {
-            try {
-                // finalize中进行重要清理工作是不可靠的
-                System.out.println("Finalizing...");
-                
-                // 更糟糕的是在finalize中抛出异常
-                if (Math.random() > 0.5) {
-                    throw new RuntimeException("Finalize failed");
-                }
-                
-            } finally {
-                super.finalize();
-            }
+        public void close() {
+            handle.close();
         }
     }
     
     /**
-     * 11. 集合的并发修改
+     * 11. 集合的批量删除：不在迭代过程中修改集合，而是一次标记、一次压缩
      */
-    public void concurrentModificationIssue() {
+    public List<String> concurrentModificationIssue() {
         List<String> list = new ArrayList<>();
         list.add("item1");
         list.add("item2");
         list.add("item3");
         
-        // 在迭代过程中修改集合
-        for (String item : list) {
-            if (item.equals("item2")) {
-                list.remove(item); // 抛出ConcurrentModificationException
-            }
-        }
+        BulkMutations.removeIf(list, "item2"::equals);
+        return list;
     }
     
     /**
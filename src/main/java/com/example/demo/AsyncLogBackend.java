@@ -0,0 +1,310 @@
+package com.example.demo;
+
+import org.slf4j.helpers.FormattingTuple;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基于无锁环形缓冲区的异步日志后端
+ *
+ * 业务线程只负责在环形缓冲区中占一个槽位并写入消息模板和参数，
+ * 消息格式化和真正的输出都在后台写线程中批量完成，请求线程不再直接竞争
+ * System.out/System.err 上的同步锁。
+ */
+public class AsyncLogBackend implements AutoCloseable {
+
+    /** 日志级别，数值越大越严重 */
+    public enum Level {
+        TRACE, DEBUG, INFO, WARN, ERROR
+    }
+
+    /** 缓冲区满时的处理策略 */
+    public enum OverflowPolicy {
+        /** 直接丢弃新日志并计数，业务线程永不阻塞 */
+        DROP,
+        /** 等待写线程腾出槽位，保证不丢日志：先短暂自旋，之后改为挂起线程 */
+        BLOCK
+    }
+
+    /**
+     * 1. 预分配的日志槽位，由生产者填充、写线程清空后复用
+     */
+    private static final class Slot {
+        long timestamp;
+        Level level;
+        String loggerName;
+        String threadName;
+        String pattern;
+        Object[] args;
+        Throwable throwable;
+
+        void clear() {
+            loggerName = null;
+            threadName = null;
+            pattern = null;
+            args = null;
+            throwable = null;
+        }
+    }
+
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int BLOCK_SPIN_LIMIT = 1024;
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Slot[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final PrintStream out;
+    private final PrintStream err;
+
+    /** 下一个可被生产者申请的序号 */
+    private final AtomicLong claimCursor = new AtomicLong();
+    /** 写线程下一个要消费的序号 */
+    private volatile long consumeCursor;
+    private volatile boolean running;
+    /** 关闭后不再有写线程，发布日志的线程自己同步写出 */
+    private volatile boolean closed;
+    /** 写线程与关闭后的同步写出互斥，保证同一时刻只有一个消费者 */
+    private final Object drainLock = new Object();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private Thread writer;
+
+    // 只在写线程中使用，SimpleDateFormat因此不会被并发访问
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    private final StringBuilder outBatch = new StringBuilder(4096);
+    private final StringBuilder errBatch = new StringBuilder(1024);
+
+    public AsyncLogBackend(int capacity, int batchSize, OverflowPolicy overflowPolicy,
+                           PrintStream out, PrintStream err) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.slots = new Slot[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            published.set(i, -1L);
+        }
+        this.mask = capacity - 1;
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * 按系统属性创建后端：demo.log.bufferSize、demo.log.batchSize、demo.log.overflow
+     */
+    public static AsyncLogBackend fromSystemProperties() {
+        int capacity = Integer.getInteger("demo.log.bufferSize", 8192);
+        int batch = Integer.getInteger("demo.log.batchSize", 256);
+        OverflowPolicy policy = OverflowPolicy.valueOf(
+            System.getProperty("demo.log.overflow", OverflowPolicy.DROP.name()).toUpperCase());
+        return new AsyncLogBackend(capacity, batch, policy, System.out, System.err);
+    }
+
+    /**
+     * 2. 启动后台批量写线程
+     */
+    public synchronized void start() {
+        if (writer != null || closed) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::drainLoop, "async-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 3. 发布一条日志；调用方应当已经完成级别检查
+     *
+     * 关闭之后发布的日志由调用线程同步写出，不会丢失。
+     *
+     * @return 日志是否进入了缓冲区（DROP策略下缓冲区满时返回false）
+     */
+    public boolean publish(Level level, String loggerName, String pattern,
+                           Object[] args, Throwable throwable) {
+        long seq = claim();
+        if (seq < 0) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        Slot slot = slots[(int) seq & mask];
+        slot.timestamp = System.currentTimeMillis();
+        slot.level = level;
+        slot.loggerName = loggerName;
+        slot.threadName = Thread.currentThread().getName();
+        slot.pattern = pattern;
+        slot.args = args == null ? NO_ARGS : args;
+        slot.throwable = throwable;
+        // 发布槽位，写线程通过比较序号判断槽位是否就绪
+        published.set((int) seq & mask, seq);
+        // 先发布再检查关闭标记：与 close() 的先置标记再排空配对，
+        // 两边至少有一方会看到这条日志并把它写出
+        if (closed) {
+            drainAll();
+        }
+        return true;
+    }
+
+    private long claim() {
+        int capacity = slots.length;
+        int spins = 0;
+        while (true) {
+            long seq = claimCursor.get();
+            if (seq - consumeCursor >= capacity) {
+                if (closed) {
+                    // 没有写线程了，由调用线程腾出槽位
+                    drainBatch();
+                    continue;
+                }
+                if (overflowPolicy == OverflowPolicy.DROP || !running) {
+                    return -1L;
+                }
+                if (spins < BLOCK_SPIN_LIMIT) {
+                    spins++;
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                }
+                continue;
+            }
+            if (claimCursor.compareAndSet(seq, seq + 1)) {
+                return seq;
+            }
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (drainBatch() == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        // 关闭时把剩余日志全部写出
+        drainAll();
+    }
+
+    private void drainAll() {
+        while (drainBatch() > 0) {
+            // 继续排空
+        }
+    }
+
+    /**
+     * 4. 消费一批已发布的槽位，并把整批输出一次性写到目标流
+     */
+    int drainBatch() {
+        synchronized (drainLock) {
+            return drainPublished();
+        }
+    }
+
+    private int drainPublished() {
+        long seq = consumeCursor;
+        int count = 0;
+        while (count < batchSize) {
+            int index = (int) seq & mask;
+            if (published.get(index) != seq) {
+                break;
+            }
+            Slot slot = slots[index];
+            format(slot, slot.level.compareTo(Level.WARN) >= 0 ? errBatch : outBatch);
+            slot.clear();
+            seq++;
+            count++;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        // 先写出再推进消费序号，避免BLOCK策略下生产者覆盖尚未写完的槽位
+        flush(outBatch, out);
+        flush(errBatch, err);
+        consumeCursor = seq;
+        written.addAndGet(count);
+        return count;
+    }
+
+    private void format(Slot slot, StringBuilder target) {
+        FormattingTuple tuple = MessageFormatter.arrayFormat(slot.pattern, slot.args);
+        Throwable throwable = slot.throwable != null ? slot.throwable : tuple.getThrowable();
+
+        target.append(dateFormat.format(new Date(slot.timestamp)))
+              .append(" [").append(slot.threadName).append("] ")
+              .append(slot.level).append(' ')
+              .append(slot.loggerName).append(" - ")
+              .append(tuple.getMessage())
+              .append(System.lineSeparator());
+        if (throwable != null) {
+            StringWriter trace = new StringWriter();
+            throwable.printStackTrace(new PrintWriter(trace));
+            target.append(trace);
+        }
+    }
+
+    private static void flush(StringBuilder batch, PrintStream target) {
+        if (batch.length() == 0) {
+            return;
+        }
+        target.print(batch);
+        target.flush();
+        batch.setLength(0);
+    }
+
+    /** 因缓冲区满而丢弃的日志条数 */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** 已写出的日志条数 */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * 5. 停止写线程并写出缓冲区中剩余的日志，之后的日志改为同步写出
+     */
+    @Override
+    public void close() {
+        Thread current;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            current = writer;
+            closed = true;
+            running = false;
+            writer = null;
+        }
+        if (current != null) {
+            try {
+                current.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 写线程退出后才发布的日志，以及从未启动写线程时缓冲的日志
+        drainAll();
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.demo;
+
+import org.slf4j.helpers.MarkerIgnoringBase;
+
+/**
+ * slf4j Logger实现，把日志事件交给 {@link AsyncLogBackend}
+ *
+ * 级别检查在调用线程上完成，未启用的级别不会产生任何格式化或分配；
+ * 启用的级别只保存消息模板和参数，格式化推迟到后台写线程。
+ */
+public class AsyncLogger extends MarkerIgnoringBase {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient AsyncLogBackend backend;
+    private final AsyncLogBackend.Level threshold;
+
+    public AsyncLogger(String name, AsyncLogBackend backend, AsyncLogBackend.Level threshold) {
+        this.name = name;
+        this.backend = backend;
+        this.threshold = threshold;
+    }
+
+    private boolean enabled(AsyncLogBackend.Level level) {
+        return level.compareTo(threshold) >= 0;
+    }
+
+    private void log(AsyncLogBackend.Level level, String msg, Object[] args, Throwable t) {
+        if (enabled(level)) {
+            backend.publish(level, name, msg, args, t);
+        }
+    }
+
+    private void log1(AsyncLogBackend.Level level, String format, Object arg) {
+        if (enabled(level)) {
+            backend.publish(level, name, format, new Object[] {arg}, null);
+        }
+    }
+
+    private void log2(AsyncLogBackend.Level level, String format, Object arg1, Object arg2) {
+        if (enabled(level)) {
+            backend.publish(level, name, format, new Object[] {arg1, arg2}, null);
+        }
+    }
+
+    // TRACE
+
+    @Override
+    public boolean isTraceEnabled() {
+        return enabled(AsyncLogBackend.Level.TRACE);
+    }
+
+    @Override
+    public void trace(String msg) {
+        log(AsyncLogBackend.Level.TRACE, msg, null, null);
+    }
+
+    @Override
+    public void trace(String format, Object arg) {
+        log1(AsyncLogBackend.Level.TRACE, format, arg);
+    }
+
+    @Override
+    public void trace(String format, Object arg1, Object arg2) {
+        log2(AsyncLogBackend.Level.TRACE, format, arg1, arg2);
+    }
+
+    @Override
+    public void trace(String format, Object... arguments) {
+        log(AsyncLogBackend.Level.TRACE, format, arguments, null);
+    }
+
+    @Override
+    public void trace(String msg, Throwable t) {
+        log(AsyncLogBackend.Level.TRACE, msg, null, t);
+    }
+
+    // DEBUG
+
+    @Override
+    public boolean isDebugEnabled() {
+        return enabled(AsyncLogBackend.Level.DEBUG);
+    }
+
+    @Override
+    public void debug(String msg) {
+        log(AsyncLogBackend.Level.DEBUG, msg, null, null);
+    }
+
+    @Override
+    public void debug(String format, Object arg) {
+        log1(AsyncLogBackend.Level.DEBUG, format, arg);
+    }
+
+    @Override
+    public void debug(String format, Object arg1, Object arg2) {
+        log2(AsyncLogBackend.Level.DEBUG, format, arg1, arg2);
+    }
+
+    @Override
+    public void debug(String format, Object... arguments) {
+        log(AsyncLogBackend.Level.DEBUG, format, arguments, null);
+    }
+
+    @Override
+    public void debug(String msg, Throwable t) {
+        log(AsyncLogBackend.Level.DEBUG, msg, null, t);
+    }
+
+    // INFO
+
+    @Override
+    public boolean isInfoEnabled() {
+        return enabled(AsyncLogBackend.Level.INFO);
+    }
+
+    @Override
+    public void info(String msg) {
+        log(AsyncLogBackend.Level.INFO, msg, null, null);
+    }
+
+    @Override
+    public void info(String format, Object arg) {
+        log1(AsyncLogBackend.Level.INFO, format, arg);
+    }
+
+    @Override
+    public void info(String format, Object arg1, Object arg2) {
+        log2(AsyncLogBackend.Level.INFO, format, arg1, arg2);
+    }
+
+    @Override
+    public void info(String format, Object... arguments) {
+        log(AsyncLogBackend.Level.INFO, format, arguments, null);
+    }
+
+    @Override
+    public void info(String msg, Throwable t) {
+        log(AsyncLogBackend.Level.INFO, msg, null, t);
+    }
+
+    // WARN
+
+    @Override
+    public boolean isWarnEnabled() {
+        return enabled(AsyncLogBackend.Level.WARN);
+    }
+
+    @Override
+    public void warn(String msg) {
+        log(AsyncLogBackend.Level.WARN, msg, null, null);
+    }
+
+    @Override
+    public void warn(String format, Object arg) {
+        log1(AsyncLogBackend.Level.WARN, format, arg);
+    }
+
+    @Override
+    public void warn(String format, Object arg1, Object arg2) {
+        log2(AsyncLogBackend.Level.WARN, format, arg1, arg2);
+    }
+
+    @Override
+    public void warn(String format, Object... arguments) {
+        log(AsyncLogBackend.Level.WARN, format, arguments, null);
+    }
+
+    @Override
+    public void warn(String msg, Throwable t) {
+        log(AsyncLogBackend.Level.WARN, msg, null, t);
+    }
+
+    // ERROR
+
+    @Override
+    public boolean isErrorEnabled() {
+        return enabled(AsyncLogBackend.Level.ERROR);
+    }
+
+    @Override
+    public void error(String msg) {
+        log(AsyncLogBackend.Level.ERROR, msg, null, null);
+    }
+
+    @Override
+    public void error(String format, Object arg) {
+        log1(AsyncLogBackend.Level.ERROR, format, arg);
+    }
+
+    @Override
+    public void error(String format, Object arg1, Object arg2) {
+        log2(AsyncLogBackend.Level.ERROR, format, arg1, arg2);
+    }
+
+    @Override
+    public void error(String format, Object... arguments) {
+        log(AsyncLogBackend.Level.ERROR, format, arguments, null);
+    }
+
+    @Override
+    public void error(String msg, Throwable t) {
+        log(AsyncLogBackend.Level.ERROR, msg, null, t);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 为每个名称缓存一个 {@link AsyncLogger}，所有Logger共享同一个环形缓冲区后端
+ *
+ * 日志级别通过系统属性 demo.log.level 配置，默认INFO。
+ */
+public class AsyncLoggerFactory implements ILoggerFactory {
+
+    private final ConcurrentMap<String, Logger> loggers = new ConcurrentHashMap<>();
+    private final AsyncLogBackend backend;
+    private final AsyncLogBackend.Level threshold;
+
+    public AsyncLoggerFactory() {
+        this(AsyncLogBackend.fromSystemProperties(), AsyncLogBackend.Level.valueOf(
+            System.getProperty("demo.log.level", AsyncLogBackend.Level.INFO.name()).toUpperCase()));
+        backend.start();
+        // JVM退出前写出缓冲区中剩余的日志
+        Runtime.getRuntime().addShutdownHook(new Thread(backend::close, "async-log-shutdown"));
+    }
+
+    public AsyncLoggerFactory(AsyncLogBackend backend, AsyncLogBackend.Level threshold) {
+        this.backend = backend;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public Logger getLogger(String name) {
+        return loggers.computeIfAbsent(name, n -> new AsyncLogger(n, backend, threshold));
+    }
+
+    public AsyncLogBackend getBackend() {
+        return backend;
+    }
+}
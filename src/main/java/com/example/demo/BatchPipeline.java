@@ -0,0 +1,238 @@
+package com.example.demo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 批量处理流水线：source → filter/map → sink
+ *
+ * 相邻的 filter/map 阶段在构建时融合为一个函数，每批数据只遍历一次，
+ * 不产生中间集合。数据按批读取，可以交给有界线程池并行处理；sink 始终在
+ * 调用线程上按批调用，因此不需要线程安全。要求保序时按提交顺序输出结果，
+ * 否则按完成顺序输出。
+ *
+ * @param <T> 源数据类型
+ * @param <R> 当前阶段的输出类型
+ */
+public final class BatchPipeline<T, R> {
+
+    /** 批量接收处理结果 */
+    public interface Sink<R> {
+        void accept(List<R> batch);
+    }
+
+    /** 融合后的阶段返回该标记表示元素被过滤掉 */
+    private static final Object SKIP = new Object();
+
+    private final Iterable<? extends T> source;
+    private final Function<Object, Object> fused;
+    private final int batchSize;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final boolean ordered;
+
+    private BatchPipeline(Iterable<? extends T> source, Function<Object, Object> fused, int batchSize,
+                          ExecutorService executor, int maxInFlight, boolean ordered) {
+        this.source = source;
+        this.fused = fused;
+        this.batchSize = batchSize;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.ordered = ordered;
+    }
+
+    public static <T> BatchPipeline<T, T> from(Iterable<? extends T> source) {
+        return new BatchPipeline<>(source, null, 1024, null, 0, true);
+    }
+
+    /**
+     * 1. 构建阶段：filter/map 与已有阶段组合成一个函数
+     */
+    @SuppressWarnings("unchecked")
+    public BatchPipeline<T, R> filter(Predicate<? super R> predicate) {
+        return then(value -> predicate.test((R) value) ? value : SKIP);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <V> BatchPipeline<T, V> map(Function<? super R, ? extends V> mapper) {
+        return then(value -> mapper.apply((R) value));
+    }
+
+    private <V> BatchPipeline<T, V> then(Function<Object, Object> next) {
+        Function<Object, Object> previous = fused;
+        Function<Object, Object> combined = previous == null ? next : value -> {
+            Object intermediate = previous.apply(value);
+            return intermediate == SKIP ? SKIP : next.apply(intermediate);
+        };
+        return new BatchPipeline<>(source, combined, batchSize, executor, maxInFlight, ordered);
+    }
+
+    public BatchPipeline<T, R> batchSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("batch size must be positive: " + size);
+        }
+        return new BatchPipeline<>(source, fused, size, executor, maxInFlight, ordered);
+    }
+
+    /**
+     * 2. 在给定线程池上并行处理各批，最多同时有 maxInFlight 批未输出，超出时读取方等待
+     */
+    public BatchPipeline<T, R> parallel(ExecutorService pool, int maxInFlight, boolean keepOrder) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        return new BatchPipeline<>(source, fused, batchSize, pool, maxInFlight, keepOrder);
+    }
+
+    /**
+     * 3. 执行流水线，返回输出元素总数
+     */
+    public long to(Sink<? super R> sink) {
+        Iterator<? extends T> it = source.iterator();
+        if (executor == null) {
+            long total = 0;
+            List<Object> batch;
+            while (!(batch = nextBatch(it)).isEmpty()) {
+                total += emit(process(batch), sink);
+            }
+            return total;
+        }
+        return ordered ? runOrdered(it, sink) : runUnordered(it, sink);
+    }
+
+    private List<Object> nextBatch(Iterator<? extends T> it) {
+        if (!it.hasNext()) {
+            return Collections.emptyList();
+        }
+        List<Object> batch = new ArrayList<>(batchSize);
+        while (batch.size() < batchSize && it.hasNext()) {
+            batch.add(it.next());
+        }
+        return batch;
+    }
+
+    /** 融合后的单循环 */
+    @SuppressWarnings("unchecked")
+    private List<R> process(List<Object> batch) {
+        if (fused == null) {
+            return (List<R>) batch;
+        }
+        List<Object> out = new ArrayList<>(batch.size());
+        for (Object item : batch) {
+            Object result = fused.apply(item);
+            if (result != SKIP) {
+                out.add(result);
+            }
+        }
+        return (List<R>) out;
+    }
+
+    private long emit(List<R> results, Sink<? super R> sink) {
+        if (results.isEmpty()) {
+            return 0;
+        }
+        sink.accept(Collections.unmodifiableList(results));
+        return results.size();
+    }
+
+    private long runOrdered(Iterator<? extends T> it, Sink<? super R> sink) {
+        Deque<Future<List<R>>> inFlight = new ArrayDeque<>();
+        long total = 0;
+        try {
+            List<Object> batch;
+            while (!(batch = nextBatch(it)).isEmpty()) {
+                if (inFlight.size() == maxInFlight) {
+                    total += emit(await(inFlight.removeFirst()), sink);
+                }
+                List<Object> submitted = batch;
+                inFlight.addLast(executor.submit(() -> process(submitted)));
+            }
+            while (!inFlight.isEmpty()) {
+                total += emit(await(inFlight.removeFirst()), sink);
+            }
+            return total;
+        } finally {
+            inFlight.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private long runUnordered(Iterator<? extends T> it, Sink<? super R> sink) {
+        CompletionService<List<R>> completion = new ExecutorCompletionService<>(executor);
+        List<Future<List<R>>> submitted = new ArrayList<>();
+        int pending = 0;
+        long total = 0;
+        try {
+            List<Object> batch;
+            while (!(batch = nextBatch(it)).isEmpty()) {
+                if (pending == maxInFlight) {
+                    total += emit(await(take(completion)), sink);
+                    pending--;
+                }
+                List<Object> current = batch;
+                submitted.add(completion.submit(() -> process(current)));
+                pending++;
+            }
+            while (pending > 0) {
+                total += emit(await(take(completion)), sink);
+                pending--;
+            }
+            return total;
+        } finally {
+            submitted.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private static <V> Future<V> take(CompletionService<V> completion) {
+        try {
+            return completion.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for pipeline batch", e);
+        }
+    }
+
+    private static <V> V await(Future<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for pipeline batch", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Pipeline batch failed", cause);
+        }
+    }
+
+    /**
+     * 4. 创建有界线程池：固定线程数、有界队列，队列满时由提交线程自己执行
+     */
+    public static ExecutorService newBoundedPool(String name, int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
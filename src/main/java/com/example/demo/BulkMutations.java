@@ -0,0 +1,201 @@
+package com.example.demo;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * 批量删除工具，替代“边遍历边 remove”的写法
+ *
+ * 逐个 remove 在 ArrayList 上每次都要移动后面的元素，整体 O(n²)，并且在
+ * foreach 中调用会抛出 ConcurrentModificationException。这里统一使用
+ * “先标记、再一次性压缩”的方式，整体 O(n)；大列表的标记阶段在 ForkJoin
+ * 线程池上并行执行。
+ */
+public final class BulkMutations {
+
+    /** 超过该长度时并行评估谓词 */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
+    /** 每个并行任务至少处理的元素数，必须是64的倍数，保证每个位图字只被一个任务写入 */
+    private static final int LEAF_SIZE = 1 << 12;
+
+    private BulkMutations() {
+    }
+
+    /**
+     * 1. 数组单遍压缩：保留不满足条件的元素并前移，返回新的有效长度
+     *
+     * 被腾出的尾部槽位会被置为null，避免继续持有已删除对象。
+     */
+    public static <T> int removeIf(T[] array, int size, Predicate<? super T> filter) {
+        int write = 0;
+        for (int read = 0; read < size; read++) {
+            T item = array[read];
+            if (!filter.test(item)) {
+                array[write++] = item;
+            }
+        }
+        for (int i = write; i < size; i++) {
+            array[i] = null;
+        }
+        return write;
+    }
+
+    /**
+     * 2. 列表批量删除，返回删除的元素个数
+     */
+    public static <T> int removeIf(List<T> list, Predicate<? super T> filter) {
+        return removeIf(list, filter, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * 先对全部元素求值得到删除位图，谓词抛出异常时列表保持原样；
+     * 之后在一次遍历中把保留的元素前移，最后一次性截断尾部。
+     * 列表支持 set 但不支持删除（如 Arrays.asList）时还原为原样并抛出 UnsupportedOperationException。
+     */
+    public static <T> int removeIf(List<T> list, Predicate<? super T> filter, int parallelThreshold) {
+        if (!(list instanceof RandomAccess)) {
+            return removeSequentialAccess(list, filter);
+        }
+        int size = list.size();
+        if (size == 0) {
+            return 0;
+        }
+        long[] removed = new long[(size + 63) >>> 6];
+        if (size >= parallelThreshold) {
+            ForkJoinPool.commonPool().invoke(new MarkTask<>(list, filter, removed, 0, size));
+        } else {
+            mark(list, filter, removed, 0, size);
+        }
+        return compact(list, removed, size);
+    }
+
+    private static <T> int removeSequentialAccess(List<T> list, Predicate<? super T> filter) {
+        int count = 0;
+        for (Iterator<T> it = list.iterator(); it.hasNext(); ) {
+            if (filter.test(it.next())) {
+                it.remove();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static <T> void mark(List<T> list, Predicate<? super T> filter, long[] removed, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (filter.test(list.get(i))) {
+                removed[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    private static <T> int compact(List<T> list, long[] removed, int size) {
+        int count = 0;
+        for (long word : removed) {
+            count += Long.bitCount(word);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        // 被覆盖前先保存删除的元素，列表不支持截断时据此还原
+        Object[] dropped = new Object[count];
+        int write = 0;
+        int drop = 0;
+        for (int read = 0; read < size; read++) {
+            if ((removed[read >>> 6] & (1L << read)) == 0) {
+                if (write != read) {
+                    list.set(write, list.get(read));
+                }
+                write++;
+            } else {
+                dropped[drop++] = list.get(read);
+            }
+        }
+        try {
+            // ArrayList 的 subList().clear() 只做一次 removeRange，不会逐个移动元素
+            list.subList(write, size).clear();
+        } catch (UnsupportedOperationException e) {
+            restore(list, removed, dropped, write, size);
+            throw e;
+        }
+        return count;
+    }
+
+    /**
+     * 从后往前把保留的元素放回原位、删除的元素填回空位；
+     * 读取位置总在写入位置之前，不会读到已经还原过的槽位
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void restore(List<T> list, long[] removed, Object[] dropped, int kept, int size) {
+        int drop = dropped.length;
+        for (int i = size - 1; i >= 0; i--) {
+            if ((removed[i >>> 6] & (1L << i)) != 0) {
+                list.set(i, (T) dropped[--drop]);
+            } else {
+                list.set(i, list.get(--kept));
+            }
+        }
+    }
+
+    /**
+     * 3. 并行标记任务：按64对齐拆分区间，各任务写入互不重叠的位图字
+     */
+    private static final class MarkTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> list;
+        private final Predicate<? super T> filter;
+        private final long[] removed;
+        private final int from;
+        private final int to;
+
+        MarkTask(List<T> list, Predicate<? super T> filter, long[] removed, int from, int to) {
+            this.list = list;
+            this.filter = filter;
+            this.removed = removed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                mark(list, filter, removed, from, to);
+                return;
+            }
+            int mid = ((from + to) >>> 1) & ~63;
+            invokeAll(new MarkTask<>(list, filter, removed, from, mid),
+                      new MarkTask<>(list, filter, removed, mid, to));
+        }
+    }
+
+    /**
+     * 4. 针对被其他线程同时遍历的共享列表的批量删除
+     *
+     * CopyOnWriteArrayList 自身的 removeIf 只复制一次数组，读者继续看到旧快照；
+     * 其他列表需要是 Collections.synchronizedList 包装的，删除期间持有列表自身的锁，
+     * 与按照约定在 synchronized(list) 中遍历的读者互斥。
+     */
+    public static <T> int removeIfShared(List<T> shared, Predicate<? super T> filter) {
+        if (shared instanceof CopyOnWriteArrayList) {
+            int[] count = new int[1];
+            shared.removeIf(item -> {
+                if (filter.test(item)) {
+                    count[0]++;
+                    return true;
+                }
+                return false;
+            });
+            return count[0];
+        }
+        synchronized (shared) {
+            // 持锁期间不能并行标记：工作线程访问同步列表时会等待当前线程持有的锁
+            return removeIf(shared, filter, Integer.MAX_VALUE);
+        }
+    }
+}
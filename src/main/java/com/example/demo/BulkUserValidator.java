@@ -0,0 +1,233 @@
+package com.example.demo;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 列式批量校验用户数据
+ *
+ * 输入是按列存放的 String[] 邮箱和 int[] 年龄，一遍扫描同时完成邮箱格式和年龄
+ * 范围检查，结果写入位图和错误码数组，不为单条记录创建任何对象。邮箱规则与
+ * {@link PerformanceIssuesDemo#validateEmail} 的正则一致，但用字符扫描实现，
+ * 不再经过正则引擎。大批量数据按64对齐的分块在 ForkJoin 线程池上并行校验。
+ */
+public class BulkUserValidator {
+
+    public static final byte OK = 0;
+    public static final byte MISSING_EMAIL = 1;
+    public static final byte INVALID_EMAIL = 2;
+    public static final byte AGE_OUT_OF_RANGE = 3;
+
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+    private static final int LEAF_SIZE = 1 << 13;
+
+    private final int minAge;
+    private final int maxAge;
+
+    public BulkUserValidator(int minAge, int maxAge) {
+        if (minAge > maxAge) {
+            throw new IllegalArgumentException("minAge must not exceed maxAge");
+        }
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * 校验结果：有效记录位图 + 每条记录的错误码
+     */
+    public static final class Result {
+        private final long[] validBits;
+        private final byte[] errorCodes;
+        private final int count;
+
+        Result(int count) {
+            this.count = count;
+            this.validBits = new long[(count + 63) >>> 6];
+            this.errorCodes = new byte[count];
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public boolean isValid(int index) {
+            return (validBits[index >>> 6] & (1L << index)) != 0;
+        }
+
+        public byte errorCode(int index) {
+            return errorCodes[index];
+        }
+
+        public int validCount() {
+            int total = 0;
+            for (long word : validBits) {
+                total += Long.bitCount(word);
+            }
+            return total;
+        }
+
+        public BitSet toBitSet() {
+            return BitSet.valueOf(validBits);
+        }
+    }
+
+    /**
+     * 1. 校验单条记录，返回错误码
+     */
+    public byte validate(String email, int age) {
+        if (email == null || email.isEmpty()) {
+            return MISSING_EMAIL;
+        }
+        if (!isValidEmail(email)) {
+            return INVALID_EMAIL;
+        }
+        if (age < minAge || age > maxAge) {
+            return AGE_OUT_OF_RANGE;
+        }
+        return OK;
+    }
+
+    /** 等价于 ^[A-Za-z0-9+_.-]+@(.+)$，其中 '.' 不匹配行终止符 */
+    static boolean isValidEmail(String email) {
+        int length = email.length();
+        int i = 0;
+        while (i < length) {
+            char c = email.charAt(i);
+            if (c == '@') {
+                break;
+            }
+            if (!isLocalPartChar(c)) {
+                return false;
+            }
+            i++;
+        }
+        // 本地部分非空、存在 '@' 且其后至少还有一个字符
+        if (i == 0 || i >= length - 1) {
+            return false;
+        }
+        // 域名部分不能含换行，否则可以借此注入邮件头
+        for (int j = i + 1; j < length; j++) {
+            if (isLineTerminator(email.charAt(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isLocalPartChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+            || c == '+' || c == '_' || c == '.' || c == '-';
+    }
+
+    /**
+     * 2. 批量校验前 count 条记录
+     */
+    public Result validate(String[] emails, int[] ages, int count) {
+        return validate(emails, ages, count, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public Result validate(String[] emails, int[] ages, int count, int parallelThreshold) {
+        if (count > emails.length || count > ages.length) {
+            throw new IllegalArgumentException("count exceeds column length: " + count);
+        }
+        Result result = new Result(count);
+        if (count >= parallelThreshold) {
+            ForkJoinPool.commonPool().invoke(new ValidateTask(emails, ages, result, 0, count));
+        } else {
+            validateRange(emails, ages, result, 0, count);
+        }
+        return result;
+    }
+
+    private void validateRange(String[] emails, int[] ages, Result result, int from, int to) {
+        long[] bits = result.validBits;
+        byte[] codes = result.errorCodes;
+        for (int i = from; i < to; i++) {
+            byte code = validate(emails[i], ages[i]);
+            codes[i] = code;
+            if (code == OK) {
+                bits[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    /** 按64对齐拆分，保证每个位图字只被一个任务写入 */
+    private final class ValidateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] emails;
+        private final int[] ages;
+        private final Result result;
+        private final int from;
+        private final int to;
+
+        ValidateTask(String[] emails, int[] ages, Result result, int from, int to) {
+            this.emails = emails;
+            this.ages = ages;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                validateRange(emails, ages, result, from, to);
+                return;
+            }
+            int mid = ((from + to) >>> 1) & ~63;
+            invokeAll(new ValidateTask(emails, ages, result, from, mid),
+                      new ValidateTask(emails, ages, result, mid, to));
+        }
+    }
+
+    /**
+     * 3. HTML转义后追加到调用方复用的缓冲区
+     */
+    public static StringBuilder appendEscaped(StringBuilder out, CharSequence text) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '"':
+                    out.append("&quot;");
+                    break;
+                case '\'':
+                    out.append("&#39;");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 4. 把有效记录渲染为HTML片段；调用方传入同一个 StringBuilder 可在多批之间复用
+     */
+    public static StringBuilder renderValid(String[] emails, Result result, StringBuilder out) {
+        for (int word = 0; word < result.validBits.length; word++) {
+            long bits = result.validBits[word];
+            while (bits != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                out.append("<div>User input: ");
+                appendEscaped(out, emails[index]).append("</div>\n");
+                bits &= bits - 1;
+            }
+        }
+        return out;
+    }
+}
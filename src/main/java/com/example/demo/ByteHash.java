@@ -0,0 +1,38 @@
+package com.example.demo;
+
+/**
+ * 开放寻址索引共用的字节哈希
+ *
+ * FNV-1a 逐字节累加后再做一次混合，使线性探测分布均匀。{@link UserStore} 和
+ * {@link CacheSnapshot} 都把哈希值写进文件里的索引，修改算法会使已有文件的索引失效。
+ */
+final class ByteHash {
+
+    static final int SEED = 0x811C9DC5;
+    private static final int PRIME = 0x01000193;
+
+    private ByteHash() {
+    }
+
+    /** 累加一个字节 */
+    static int update(int hash, int value) {
+        return (hash ^ (value & 0xFF)) * PRIME;
+    }
+
+    /** 累加完成后的混合 */
+    static int finish(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+
+    static int of(byte[] bytes) {
+        int hash = SEED;
+        for (byte b : bytes) {
+            hash = update(hash, b);
+        }
+        return finish(hash);
+    }
+}
@@ -0,0 +1,478 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+/**
+ * 缓存快照：把 Map 中的条目写成紧凑的二进制文件，启动时映射文件按需读取
+ *
+ * 文件布局：48字节文件头 | 条目区 | 开放寻址索引。
+ * 每个条目为 [CRC32C][键长][值长][类型][键UTF-8][值]，校验和覆盖条目中除自身外的全部字节；
+ * 文件头和索引各有自己的校验和，打开时校验，条目在第一次读取时才校验和解码。
+ * 因此打开快照只需映射文件并校验索引，即使有数百万条目也能在毫秒级完成。
+ *
+ * 写快照时只遍历 Map，不加锁（配合 ConcurrentHashMap 的弱一致迭代），先在同一目录下写
+ * 一个唯一的临时文件，完成后原子替换旧文件，并发的写入互不干扰；已映射旧文件的读者不受影响。只支持 String、数值、Boolean
+ * 和 byte[] 类型的值，其他类型的条目跳过，不使用Java序列化。
+ */
+public final class CacheSnapshot {
+
+    private static final int MAGIC = 0x43534E31;
+    private static final int VERSION = 1;
+
+    // 文件头：magic, version, 条目数, 槽数, 索引偏移, 创建时间, 索引CRC, 预留, 文件头CRC
+    private static final int HEADER_BYTES = 48;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_ENTRIES = 8;
+    private static final int H_SLOTS = 12;
+    private static final int H_INDEX = 16;
+    private static final int H_CREATED = 20;
+    private static final int H_INDEX_CRC = 28;
+    private static final int H_HEADER_CRC = 44;
+
+    private static final int ENTRY_HEADER = 13;
+    private static final int SLOT_BYTES = 8;
+
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_INTEGER = 3;
+    private static final byte TYPE_DOUBLE = 4;
+    private static final byte TYPE_BOOLEAN = 5;
+    private static final byte TYPE_BYTES = 6;
+
+    private final ByteBuffer buffer;
+    private final int entries;
+    private final int slots;
+    private final int indexOffset;
+    private final long createdMillis;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder corrupted = new LongAdder();
+
+    private CacheSnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(H_MAGIC) != MAGIC) {
+            throw new IllegalStateException("Not a cache snapshot");
+        }
+        if (buffer.getInt(H_VERSION) != VERSION) {
+            throw new IllegalStateException("Unsupported cache snapshot version " + buffer.getInt(H_VERSION));
+        }
+        if (crc(buffer, 0, H_HEADER_CRC) != buffer.getInt(H_HEADER_CRC)) {
+            throw new IllegalStateException("Cache snapshot header checksum mismatch");
+        }
+        this.entries = buffer.getInt(H_ENTRIES);
+        this.slots = buffer.getInt(H_SLOTS);
+        this.indexOffset = buffer.getInt(H_INDEX);
+        this.createdMillis = buffer.getLong(H_CREATED);
+        if (Integer.bitCount(slots) != 1 || indexOffset < HEADER_BYTES
+                || (long) indexOffset + (long) slots * SLOT_BYTES != buffer.capacity()) {
+            throw new IllegalStateException("Corrupted cache snapshot header");
+        }
+        if (crc(buffer, indexOffset, slots * SLOT_BYTES) != buffer.getInt(H_INDEX_CRC)) {
+            throw new IllegalStateException("Cache snapshot index checksum mismatch");
+        }
+    }
+
+    /**
+     * 1. 映射并校验快照文件；条目本身在读取时才校验
+     */
+    public static CacheSnapshot open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new CacheSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open cache snapshot " + file, e);
+        }
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    public long createdMillis() {
+        return createdMillis;
+    }
+
+    /**
+     * 2. 按键读取并解码一个值；不存在或校验失败时返回 null
+     */
+    public Object get(String key) {
+        lookups.increment();
+        int entry = find(key);
+        if (entry < 0) {
+            return null;
+        }
+        if (!verify(entry)) {
+            corrupted.increment();
+            return null;
+        }
+        hits.increment();
+        return decodeValue(entry);
+    }
+
+    /** 只查索引，不校验条目，也不计入懒加载统计 */
+    public boolean containsKey(String key) {
+        return find(key) >= 0;
+    }
+
+    private int find(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int hash = ByteHash.of(keyBytes);
+        int mask = slots - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int base = indexOffset + slot * SLOT_BYTES;
+            int stored = buffer.getInt(base + 4);
+            if (stored == 0) {
+                return -1;
+            }
+            int entry = stored - 1;
+            if (buffer.getInt(base) == hash && keyEquals(entry, keyBytes)) {
+                return entry;
+            }
+        }
+    }
+
+    private boolean keyEquals(int entry, byte[] key) {
+        if (buffer.getInt(entry + 4) != key.length || entry + ENTRY_HEADER + key.length > indexOffset) {
+            return false;
+        }
+        int start = entry + ENTRY_HEADER;
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int entrySize(int entry) {
+        return ENTRY_HEADER + buffer.getInt(entry + 4) + buffer.getInt(entry + 8);
+    }
+
+    private boolean verify(int entry) {
+        int keyLength = buffer.getInt(entry + 4);
+        int valueLength = buffer.getInt(entry + 8);
+        if (keyLength < 0 || valueLength < 0
+                || (long) entry + ENTRY_HEADER + keyLength + valueLength > indexOffset) {
+            return false;
+        }
+        return crc(buffer, entry + 4, ENTRY_HEADER - 4 + keyLength + valueLength) == buffer.getInt(entry);
+    }
+
+    private Object decodeValue(int entry) {
+        int keyLength = buffer.getInt(entry + 4);
+        int valueLength = buffer.getInt(entry + 8);
+        int position = entry + ENTRY_HEADER + keyLength;
+        switch (buffer.get(entry + 12)) {
+            case TYPE_STRING:
+                return new String(bytes(position, valueLength), StandardCharsets.UTF_8);
+            case TYPE_LONG:
+                return buffer.getLong(position);
+            case TYPE_INTEGER:
+                return buffer.getInt(position);
+            case TYPE_DOUBLE:
+                return buffer.getDouble(position);
+            case TYPE_BOOLEAN:
+                return buffer.get(position) != 0;
+            case TYPE_BYTES:
+                return bytes(position, valueLength);
+            default:
+                corrupted.increment();
+                return null;
+        }
+    }
+
+    private byte[] bytes(int position, int length) {
+        byte[] out = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(out);
+        return out;
+    }
+
+    /**
+     * 3. 懒加载统计：查找次数、命中次数和校验失败次数
+     */
+    public long lookups() {
+        return lookups.sum();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long corrupted() {
+        return corrupted.sum();
+    }
+
+    public double hitRate() {
+        long total = lookups.sum();
+        return total == 0 ? 0 : (double) hits.sum() / total;
+    }
+
+    /** 写快照的结果 */
+    public static final class WriteResult {
+        public final int entries;
+        public final int carriedOver;
+        public final int skipped;
+        public final long bytes;
+        public final long durationNanos;
+
+        WriteResult(int entries, int carriedOver, int skipped, long bytes, long durationNanos) {
+            this.entries = entries;
+            this.carriedOver = carriedOver;
+            this.skipped = skipped;
+            this.bytes = bytes;
+            this.durationNanos = durationNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "CacheSnapshot.WriteResult{entries=" + entries + ", carriedOver=" + carriedOver
+                + ", skipped=" + skipped + ", bytes=" + bytes + ", durationMs=" + durationNanos / 1_000_000 + "}";
+        }
+    }
+
+    /**
+     * 4. 写快照：live 中的条目全部写入；previous 中还没有被加载进 live 的条目原样带入新快照，
+     * 保证长时间没被访问的热数据不会因为重启而丢失
+     */
+    public static WriteResult write(Map<String, ?> live, CacheSnapshot previous, Path file) {
+        return write(live, Collections.<String>emptySet(), previous, file);
+    }
+
+    /**
+     * 5. 同上，但 removed 中的键已被删除，不从 previous 带入
+     */
+    public static WriteResult write(Map<String, ?> live, Set<String> removed, CacheSnapshot previous, Path file) {
+        long start = System.nanoTime();
+        Path temp = null;
+        try {
+            Path absolute = file.toAbsolutePath();
+            temp = Files.createTempFile(absolute.getParent(), absolute.getFileName() + ".", ".tmp");
+            Writer writer = new Writer(temp);
+            int skipped = 0;
+            int carried = 0;
+            try {
+                for (Map.Entry<String, ?> entry : live.entrySet()) {
+                    if (!writer.add(entry.getKey(), entry.getValue())) {
+                        skipped++;
+                    }
+                }
+                if (previous != null) {
+                    carried = previous.copyMissing(live, removed, writer);
+                }
+                writer.finish();
+            } finally {
+                writer.close();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new WriteResult(writer.count, carried, skipped, writer.position, System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            if (temp != null) {
+                deleteQuietly(temp, e);
+            }
+            if (e instanceof IOException) {
+                throw new UncheckedIOException("Failed to write cache snapshot " + file, (IOException) e);
+            }
+            throw (RuntimeException) e;
+        }
+    }
+
+    private static void deleteQuietly(Path temp, Exception failure) {
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /** 顺序扫描条目区，把 live 中没有、也没有被删除的有效条目原样复制 */
+    private int copyMissing(Map<String, ?> live, Set<String> removed, Writer writer) throws IOException {
+        int copied = 0;
+        for (int entry = HEADER_BYTES; entry < indexOffset; entry += entrySize(entry)) {
+            if (!verify(entry)) {
+                // 条目长度不可信，无法继续定位后面的条目
+                corrupted.increment();
+                break;
+            }
+            byte[] keyBytes = bytes(entry + ENTRY_HEADER, buffer.getInt(entry + 4));
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+            if (!live.containsKey(key) && !removed.contains(key)) {
+                ByteBuffer raw = buffer.duplicate();
+                raw.limit(entry + entrySize(entry)).position(entry);
+                writer.addRaw(ByteHash.of(keyBytes), raw);
+                copied++;
+            }
+        }
+        return copied;
+    }
+
+    /** 顺序写入条目，记录每个条目的哈希和偏移，最后写索引和文件头 */
+    private static final class Writer {
+        private final FileChannel channel;
+        private ByteBuffer staging = ByteBuffer.allocate(64 * 1024);
+        private ByteBuffer entryBuffer = ByteBuffer.allocate(256);
+        private int[] hashes = new int[1024];
+        private int[] offsets = new int[1024];
+        private int count;
+        private long position = HEADER_BYTES;
+
+        Writer(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_BYTES);
+        }
+
+        boolean add(String key, Object value) throws IOException {
+            byte type;
+            byte[] data = null;
+            int length;
+            if (value instanceof String) {
+                type = TYPE_STRING;
+                data = ((String) value).getBytes(StandardCharsets.UTF_8);
+                length = data.length;
+            } else if (value instanceof Long) {
+                type = TYPE_LONG;
+                length = 8;
+            } else if (value instanceof Integer) {
+                type = TYPE_INTEGER;
+                length = 4;
+            } else if (value instanceof Double) {
+                type = TYPE_DOUBLE;
+                length = 8;
+            } else if (value instanceof Boolean) {
+                type = TYPE_BOOLEAN;
+                length = 1;
+            } else if (value instanceof byte[]) {
+                type = TYPE_BYTES;
+                data = (byte[]) value;
+                length = data.length;
+            } else {
+                return false;
+            }
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            int size = ENTRY_HEADER + keyBytes.length + length;
+            if (entryBuffer.capacity() < size) {
+                entryBuffer = ByteBuffer.allocate(Math.max(size, entryBuffer.capacity() * 2));
+            }
+            ByteBuffer out = entryBuffer;
+            out.clear();
+            out.putInt(0).putInt(keyBytes.length).putInt(length).put(type).put(keyBytes);
+            if (data != null) {
+                out.put(data);
+            } else if (type == TYPE_LONG) {
+                out.putLong((Long) value);
+            } else if (type == TYPE_INTEGER) {
+                out.putInt((Integer) value);
+            } else if (type == TYPE_DOUBLE) {
+                out.putDouble((Double) value);
+            } else {
+                out.put((byte) (((Boolean) value) ? 1 : 0));
+            }
+            out.flip();
+            out.putInt(0, crc(out, 4, size - 4));
+            append(ByteHash.of(keyBytes), out);
+            return true;
+        }
+
+        void addRaw(int hash, ByteBuffer entry) throws IOException {
+            append(hash, entry);
+        }
+
+        private void append(int hash, ByteBuffer entry) throws IOException {
+            if (position + entry.remaining() > Integer.MAX_VALUE - HEADER_BYTES) {
+                throw new IllegalStateException("Cache snapshot cannot exceed 2GB");
+            }
+            if (count == hashes.length) {
+                hashes = Arrays.copyOf(hashes, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            hashes[count] = hash;
+            offsets[count] = (int) position;
+            count++;
+            position += entry.remaining();
+            if (entry.remaining() > staging.remaining()) {
+                flush();
+                if (entry.remaining() > staging.capacity()) {
+                    writeFully(entry);
+                    return;
+                }
+            }
+            staging.put(entry);
+        }
+
+        private void flush() throws IOException {
+            staging.flip();
+            writeFully(staging);
+            staging.clear();
+        }
+
+        private void writeFully(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+
+        /** 写索引（装载因子不超过0.5）和文件头，然后刷盘 */
+        void finish() throws IOException {
+            flush();
+            int slots = Integer.highestOneBit(Math.max(16, count * 2) - 1) << 1;
+            long indexOffset = position;
+            if (indexOffset + (long) slots * SLOT_BYTES > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Cache snapshot cannot exceed 2GB");
+            }
+            ByteBuffer index = ByteBuffer.allocate(slots * SLOT_BYTES);
+            int mask = slots - 1;
+            for (int i = 0; i < count; i++) {
+                int slot = hashes[i] & mask;
+                while (index.getInt(slot * SLOT_BYTES + 4) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                index.putInt(slot * SLOT_BYTES, hashes[i]);
+                index.putInt(slot * SLOT_BYTES + 4, offsets[i] + 1);
+            }
+            int indexCrc = crc(index, 0, index.capacity());
+            writeFully(index);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(H_MAGIC, MAGIC)
+                .putInt(H_VERSION, VERSION)
+                .putInt(H_ENTRIES, count)
+                .putInt(H_SLOTS, slots)
+                .putInt(H_INDEX, (int) indexOffset)
+                .putLong(H_CREATED, System.currentTimeMillis())
+                .putInt(H_INDEX_CRC, indexCrc);
+            header.putInt(H_HEADER_CRC, crc(header, 0, H_HEADER_CRC));
+            channel.position(0);
+            writeFully(header);
+            channel.force(true);
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static int crc(ByteBuffer source, int position, int length) {
+        ByteBuffer view = source.duplicate();
+        view.limit(position + length).position(position);
+        CRC32C crc = new CRC32C();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+}
@@ -1,14 +1,24 @@
 package com.example.demo;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * 这个类故意包含了多种代码问题，用于测试代码分析工具的能力
  */
 public class CodeIssuesDemo {
     
+    private static final Logger logger = LoggerFactory.getLogger(CodeIssuesDemo.class);
+    
     // 1. 未使用的字段
     private String unusedField = "I'm never used";
     
@@ -19,6 +29,10 @@ public class CodeIssuesDemo {
     private static final int MAGIC_NUMBER = 42;
     
     public static void main(String[] args) {
+        if (args.length > 0 && "load".equals(args[0])) {
+            runLoad(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         CodeIssuesDemo demo = new CodeIssuesDemo();
         
         // 测试各种代码问题
@@ -31,6 +45,80 @@ public class CodeIssuesDemo {
         demo.deadCode();
     }
     
+    /**
+     * 压测入口：load [场景名...] [--rate=次/秒] [--threads=N] [--duration=秒] [--warmup=秒]
+     * [--csv=文件] [--json=文件]。不指定 --rate 时按固定并发运行，不指定场景时运行全部场景。
+     */
+    static List<LoadGenerator.Report> runLoad(String[] args) {
+        Map<String, LoadGenerator.Scenario> scenarios = loadScenarios();
+        List<String> selected = new ArrayList<>();
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int eq = arg.indexOf('=');
+                if (eq < 0) {
+                    throw new IllegalArgumentException("Option needs a value: " + arg);
+                }
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            } else if (scenarios.containsKey(arg)) {
+                selected.add(arg);
+            } else {
+                throw new IllegalArgumentException("Unknown scenario " + arg + ", expected one of " + scenarios.keySet());
+            }
+        }
+        if (selected.isEmpty()) {
+            selected.addAll(scenarios.keySet());
+        }
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        long warmup = Long.parseLong(options.getOrDefault("warmup", "2"));
+        long duration = Long.parseLong(options.getOrDefault("duration", "10"));
+        
+        List<LoadGenerator.Report> reports = new ArrayList<>();
+        for (String name : selected) {
+            LoadGenerator generator = options.containsKey("rate")
+                ? LoadGenerator.fixedRate(name, scenarios.get(name), Double.parseDouble(options.get("rate")), threads)
+                : LoadGenerator.fixedConcurrency(name, scenarios.get(name), threads);
+            LoadGenerator.Report report = generator
+                .warmup(warmup, TimeUnit.SECONDS)
+                .duration(duration, TimeUnit.SECONDS)
+                .run();
+            System.out.println(report);
+            reports.add(report);
+        }
+        writeReport(options.get("csv"), LoadGenerator.toCsv(reports));
+        writeReport(options.get("json"), LoadGenerator.toJson(reports));
+        return reports;
+    }
+    
+    /**
+     * 可压测的场景，都不向控制台输出，避免输出本身成为瓶颈
+     */
+    static Map<String, LoadGenerator.Scenario> loadScenarios() {
+        CodeIssuesDemo demo = new CodeIssuesDemo();
+        PerformanceIssuesDemo performance = new PerformanceIssuesDemo();
+        BulkUserValidator validator = new BulkUserValidator(1, 150);
+        Map<String, LoadGenerator.Scenario> scenarios = new LinkedHashMap<>();
+        scenarios.put("nullPointerRisk", () -> demo.nullPointerRisk("load"));
+        scenarios.put("inefficientStringConcatenation", demo::inefficientStringConcatenation);
+        scenarios.put("complexMethod", () -> demo.complexMethod(2, "pre-test-post", true));
+        scenarios.put("memoryLeakRisk", demo::memoryLeakRisk);
+        scenarios.put("validateEmail", () -> performance.validateEmail("user.name+tag@example.com"));
+        scenarios.put("isNumber", () -> performance.isNumber("12345.678"));
+        scenarios.put("bulkValidate", () -> validator.validate("user.name+tag@example.com", 30));
+        return scenarios;
+    }
+    
+    private static void writeReport(String path, String content) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.write(Paths.get(path), content.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write load report to " + path, e);
+        }
+    }
+    
     /**
      * 1. Null Pointer异常风险
      */
@@ -39,21 +127,24 @@ public class CodeIssuesDemo {
         return input.toUpperCase(); // 可能抛出NullPointerException
     }
     
+    static final LineIngestor LINE_INGESTOR = new LineIngestor(DirectBufferPool.getDefault(), 1024 * 1024, 4);
+    
     /**
-     * 2. 资源泄漏问题
+     * 2. 读取文件：大块读入堆外缓冲区，行批次经有界队列交给消费方，句柄确定关闭
      */
-    public void resourceLeakIssue() {
-        try {
-            FileInputStream fis = new FileInputStream("test.txt");
-            BufferedReader reader = new BufferedReader(new InputStreamReader(fis));
-            
-            String line = reader.readLine();
-            System.out.println(line);
-            
-            // 没有在finally块中关闭资源，可能导致资源泄漏
-            
-        } catch (IOException e) {
-            e.printStackTrace(); // 不好的异常处理
+    public String resourceLeakIssue() {
+        return readFirstLine(Paths.get("test.txt"));
+    }
+    
+    static String readFirstLine(Path file) {
+        try (LineIngestor.Session session = LINE_INGESTOR.open(file);
+             LineIngestor.LineBatch batch = session.take()) {
+            String line = batch == null ? null : batch.line(0);
+            logger.info("{}", line);
+            return line;
+        } catch (UncheckedIOException e) {
+            logger.warn("Failed to read {}: {}", file, e.getCause().toString());
+            return null;
         }
     }
     
@@ -85,38 +176,35 @@ public class CodeIssuesDemo {
     }
     
     /**
-     * 5. 代码重复问题 - 第一部分
+     * 5. 原先重复的处理循环统一交给批量流水线 - 第一部分
      */
     public void duplicatedCode1() {
         // 未使用的局部变量
         int unusedVariable = 100;
         
-        List<String> list = new ArrayList<>();
-        list.add("item1");
-        list.add("item2");
-        list.add("item3");
-        
-        for (String item : list) {
-            if (item != null) {
-                System.out.println("Processing: " + item.toUpperCase());
-            }
-        }
+        printUpperCase(Arrays.asList("item1", "item2", "item3"), CodeIssuesDemo::logBatch);
     }
     
     /**
-     * 6. 代码重复问题 - 第二部分（与上面几乎相同）
+     * 6. 原先重复的处理循环统一交给批量流水线 - 第二部分
      */
     public void duplicatedCode2() {
-        List<String> list = new ArrayList<>();
-        list.add("data1");
-        list.add("data2");
-        list.add("data3");
-        
-        for (String item : list) {
-            if (item != null) {
-                System.out.println("Processing: " + item.toUpperCase());
-            }
-        }
+        printUpperCase(Arrays.asList("data1", "data2", "data3"), CodeIssuesDemo::logBatch);
+    }
+    
+    /**
+     * 过滤null、转大写，每批结果交给 sink 一次
+     */
+    static long printUpperCase(List<String> items, BatchPipeline.Sink<? super String> sink) {
+        return BatchPipeline.from(items)
+            .filter(Objects::nonNull)
+            .map(item -> "Processing: " + item.toUpperCase())
+            .to(sink);
+    }
+    
+    // 每批一条日志，经异步日志后端输出，不在调用线程上同步写 stdout
+    private static void logBatch(List<String> batch) {
+        logger.info("{}", batch);
     }
     
     /**
@@ -136,29 +224,46 @@ public class CodeIssuesDemo {
     }
     
     /**
-     * 8. 复杂度过高的方法
+     * 8. 复杂条件改为声明式决策表，编译后按分派键和共享条件扁平匹配
      */
     public void complexMethod(int type, String data, boolean flag) {
-        if (type == 1) {
-            if (flag) {
-                if (data != null) {
-                    if (data.length() > 0) {
-                        if (data.contains("test")) {
-                            if (data.startsWith("pre")) {
-                                if (data.endsWith("post")) {
-                                    // 嵌套太深
-                                    System.out.println("Very complex condition");
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        } else if (type == 2) {
-            // 更多复杂的逻辑...
+        // 每个线程复用同一个输入对象，匹配路径上不分配
+        ComplexInput input = COMPLEX_INPUT.get();
+        input.type = type;
+        input.data = data;
+        input.flag = flag;
+        Runnable action;
+        try {
+            action = COMPLEX_RULES.match(input);
+        } finally {
+            input.data = null;
+        }
+        if (action != null) {
+            action.run();
         }
     }
     
+    static final class ComplexInput {
+        int type;
+        String data;
+        boolean flag;
+    }
+    
+    private static final ThreadLocal<ComplexInput> COMPLEX_INPUT = ThreadLocal.withInitial(ComplexInput::new);
+    
+    static final DecisionTable<ComplexInput, Runnable> COMPLEX_RULES = new DecisionTable<>(
+        input -> input.type,
+        Arrays.asList(
+            new DecisionTable.Rule<ComplexInput, Runnable>("very-complex", 1,
+                () -> logger.info("Very complex condition"),
+                DecisionTable.Check.isTrue("flag", input -> input.flag),
+                DecisionTable.Check.notEmpty("data", input -> input.data),
+                DecisionTable.Check.contains("data", input -> input.data, "test"),
+                DecisionTable.Check.startsWith("data", input -> input.data, "pre"),
+                DecisionTable.Check.endsWith("data", input -> input.data, "post"))),
+        true,
+        1024);
+    
     /**
      * 9. 线程安全问题
      */
@@ -172,16 +277,15 @@ public class CodeIssuesDemo {
     }
     
     /**
-     * 10. 内存泄漏风险
+     * 10. 大块临时缓冲区：从堆外缓冲池租用并及时归还，避免巨型对象占满G1区域
      */
     public void memoryLeakRisk() {
-        // 创建大量对象但没有适当的清理
-        List<byte[]> largeList = new ArrayList<>();
+        DirectBufferPool pool = DirectBufferPool.getDefault();
         
         for (int i = 0; i < 10000; i++) {
-            largeList.add(new byte[1024 * 1024]); // 每次添加1MB
+            try (DirectBufferPool.Lease lease = pool.acquire(1024 * 1024)) { // 每次租用1MB
+                lease.buffer().put(0, (byte) i);
+            }
         }
-        
-        // 没有清理largeList，可能导致内存问题
     }
 } 
\ No newline at end of file
@@ -0,0 +1,381 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * 编译后的决策表，替代层层嵌套的 if 判断
+ *
+ * 规则以声明方式给出（一个分派键 + 若干条件的合取），构建时编译为扁平结构：
+ * 先按整型分派键二分查找到规则桶（通配规则已按优先级合并进每个桶），
+ * 再按顺序检查桶内规则。相同的条件（例如多条规则都要求 data 以 "pre" 开头）
+ * 在一次匹配中只求值一次；
+ * 规则内部的条件顺序根据采样得到的通过率和估计代价调整，最可能失败且便宜的
+ * 条件先执行。对于声明为互斥的表，命中次数多的规则会被排到前面。
+ *
+ * @param <T> 输入类型
+ * @param <A> 规则命中后返回的动作类型
+ */
+public final class DecisionTable<T, A> {
+
+    /** 每多少次匹配采样一次条件统计 */
+    private static final int SAMPLE_MASK = 15;
+
+    /**
+     * 1. 原子条件；key 就是条件的身份，同一张表中 key 相同的条件只保留第一个，
+     * 每次匹配只求值一次。因此规则里可以直接写内联 lambda，但同一个 key
+     * 必须表示同一个判断（字段条件的 key 由字段名和参数组成，同名字段应使用同一个取值含义）。
+     */
+    public static final class Check<T> {
+        private final String key;
+        private final int cost;
+        private final Predicate<T> predicate;
+
+        private Check(String key, int cost, Predicate<T> predicate) {
+            this.key = key;
+            this.cost = cost;
+            this.predicate = predicate;
+        }
+
+        public static <T> Check<T> of(String key, int cost, Predicate<T> predicate) {
+            return new Check<>(key, cost, predicate);
+        }
+
+        public static <T> Check<T> isTrue(String field, Predicate<T> getter) {
+            return new Check<>(field + " is true", 1, getter);
+        }
+
+        public static <T> Check<T> notEmpty(String field, Function<T, String> getter) {
+            return new Check<>(field + " not empty", 1, t -> {
+                String value = getter.apply(t);
+                return value != null && !value.isEmpty();
+            });
+        }
+
+        public static <T> Check<T> startsWith(String field, Function<T, String> getter, String prefix) {
+            return new Check<>(field + " startsWith " + prefix, 2 + prefix.length() / 8, t -> {
+                String value = getter.apply(t);
+                return value != null && value.startsWith(prefix);
+            });
+        }
+
+        public static <T> Check<T> endsWith(String field, Function<T, String> getter, String suffix) {
+            return new Check<>(field + " endsWith " + suffix, 2 + suffix.length() / 8, t -> {
+                String value = getter.apply(t);
+                return value != null && value.endsWith(suffix);
+            });
+        }
+
+        public static <T> Check<T> contains(String field, Function<T, String> getter, String needle) {
+            return new Check<>(field + " contains " + needle, 8 + needle.length(), t -> {
+                String value = getter.apply(t);
+                return value != null && value.contains(needle);
+            });
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    /**
+     * 2. 规则：分派键为null表示匹配任意键
+     */
+    public static final class Rule<T, A> {
+        private final String name;
+        private final Integer dispatchKey;
+        private final A action;
+        private final List<Check<T>> checks;
+
+        @SafeVarargs
+        public Rule(String name, Integer dispatchKey, A action, Check<T>... checks) {
+            this.name = name;
+            this.dispatchKey = dispatchKey;
+            this.action = action;
+            List<Check<T>> list = new ArrayList<>(checks.length);
+            for (Check<T> check : checks) {
+                list.add(check);
+            }
+            this.checks = list;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /** 编译后的规则：条件以下标引用共享的条件数组 */
+    private static final class CompiledRule<A> {
+        final int ruleIndex;
+        final A action;
+        final int[] checkIds;
+
+        CompiledRule(int ruleIndex, A action, int[] checkIds) {
+            this.ruleIndex = ruleIndex;
+            this.action = action;
+            this.checkIds = checkIds;
+        }
+    }
+
+    private static final class Plan<A> {
+        final int[] keys;
+        final CompiledRule<A>[][] buckets;
+        final CompiledRule<A>[] wildcard;
+
+        Plan(int[] keys, CompiledRule<A>[][] buckets, CompiledRule<A>[] wildcard) {
+            this.keys = keys;
+            this.buckets = buckets;
+            this.wildcard = wildcard;
+        }
+    }
+
+    /** 每个线程的条件结果缓存，用递增的轮次号代替清空 */
+    private static final class Scratch {
+        int[] stamps;
+        int epoch;
+    }
+
+    private final ToIntFunction<T> dispatch;
+    private final List<Rule<T, A>> rules;
+    private final boolean exclusive;
+    private final long reoptimizeInterval;
+    private final List<Check<T>> checks = new ArrayList<>();
+    private final int[][] ruleCheckIds;
+
+    private final LongAdder[] ruleHits;
+    private final AtomicLongArray checkEvaluations;
+    private final AtomicLongArray checkPasses;
+    private final AtomicLong sampledMatches = new AtomicLong();
+    private final AtomicBoolean optimizing = new AtomicBoolean();
+    private final ThreadLocal<Scratch> scratch;
+
+    private volatile Plan<A> plan;
+
+    /**
+     * @param dispatch           提取分派键的函数
+     * @param rules              按优先级排列的规则，先命中者生效
+     * @param exclusive          规则是否互斥；只有互斥时才允许按命中次数重排规则
+     * @param reoptimizeInterval 每多少次采样后自动重新编译，0表示只在调用 optimize() 时重排
+     */
+    public DecisionTable(ToIntFunction<T> dispatch, List<Rule<T, A>> rules,
+                         boolean exclusive, long reoptimizeInterval) {
+        this.dispatch = dispatch;
+        this.rules = new ArrayList<>(rules);
+        this.exclusive = exclusive;
+        this.reoptimizeInterval = reoptimizeInterval;
+
+        Map<String, Integer> checkIds = new LinkedHashMap<>();
+        this.ruleCheckIds = new int[rules.size()][];
+        for (int r = 0; r < rules.size(); r++) {
+            Set<Integer> ids = new LinkedHashSet<>();
+            for (Check<T> check : rules.get(r).checks) {
+                Integer id = checkIds.get(check.key);
+                if (id == null) {
+                    id = checks.size();
+                    checkIds.put(check.key, id);
+                    checks.add(check);
+                }
+                ids.add(id);
+            }
+            ruleCheckIds[r] = ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        this.ruleHits = new LongAdder[rules.size()];
+        for (int r = 0; r < ruleHits.length; r++) {
+            ruleHits[r] = new LongAdder();
+        }
+        this.checkEvaluations = new AtomicLongArray(checks.size());
+        this.checkPasses = new AtomicLongArray(checks.size());
+        int checkCount = checks.size();
+        this.scratch = ThreadLocal.withInitial(() -> {
+            Scratch s = new Scratch();
+            s.stamps = new int[checkCount];
+            return s;
+        });
+        this.plan = compile();
+    }
+
+    /**
+     * 3. 返回第一条命中规则的动作，没有规则命中时返回null
+     */
+    public A match(T input) {
+        Plan<A> current = plan;
+        Scratch s = scratch.get();
+        int epoch = ++s.epoch;
+        if (epoch >= Integer.MAX_VALUE >> 1) {
+            Arrays.fill(s.stamps, 0);
+            s.epoch = epoch = 1;
+        }
+        boolean sample = (epoch & SAMPLE_MASK) == 0;
+
+        int slot = Arrays.binarySearch(current.keys, dispatch.applyAsInt(input));
+        CompiledRule<A> hit = firstMatch(slot >= 0 ? current.buckets[slot] : current.wildcard,
+            input, s, epoch, sample);
+        if (sample && reoptimizeInterval > 0
+                && sampledMatches.incrementAndGet() % reoptimizeInterval == 0) {
+            optimize();
+        }
+        if (hit == null) {
+            return null;
+        }
+        ruleHits[hit.ruleIndex].increment();
+        return hit.action;
+    }
+
+    private CompiledRule<A> firstMatch(CompiledRule<A>[] bucket, T input, Scratch s, int epoch, boolean sample) {
+        for (CompiledRule<A> rule : bucket) {
+            if (matches(rule, input, s, epoch, sample)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(CompiledRule<A> rule, T input, Scratch s, int epoch, boolean sample) {
+        for (int id : rule.checkIds) {
+            // 低位存结果，高位存轮次：同一轮次内已求值的条件直接复用结果
+            int stamp = s.stamps[id];
+            boolean result;
+            if ((stamp >>> 1) == epoch) {
+                result = (stamp & 1) != 0;
+            } else {
+                result = checks.get(id).predicate.test(input);
+                s.stamps[id] = (epoch << 1) | (result ? 1 : 0);
+                if (sample) {
+                    checkEvaluations.incrementAndGet(id);
+                    if (result) {
+                        checkPasses.incrementAndGet(id);
+                    }
+                }
+            }
+            if (!result) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 4. 根据当前统计重新编译：条件按“代价 / 失败率”升序，互斥表的规则按命中次数降序
+     */
+    public void optimize() {
+        if (!optimizing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            plan = compile();
+        } finally {
+            optimizing.set(false);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Plan<A> compile() {
+        double[] scores = new double[checks.size()];
+        for (int id = 0; id < scores.length; id++) {
+            long evaluations = checkEvaluations.get(id);
+            double failRate = evaluations == 0
+                ? 0.5
+                : 1.0 - (double) checkPasses.get(id) / evaluations;
+            scores[id] = checks.get(id).cost / Math.max(failRate, 0.01);
+        }
+
+        List<Integer> order = new ArrayList<>();
+        for (int r = 0; r < rules.size(); r++) {
+            order.add(r);
+        }
+        if (exclusive) {
+            long[] hits = new long[rules.size()];
+            for (int r = 0; r < hits.length; r++) {
+                hits[r] = ruleHits[r].sum();
+            }
+            // 稳定排序，命中次数相同的规则保持声明顺序
+            order.sort(Comparator.comparingLong(r -> -hits[r]));
+        }
+
+        Map<Integer, List<CompiledRule<A>>> keyed = new LinkedHashMap<>();
+        for (Rule<T, A> rule : rules) {
+            if (rule.dispatchKey != null) {
+                keyed.putIfAbsent(rule.dispatchKey, new ArrayList<>());
+            }
+        }
+        List<CompiledRule<A>> wildcard = new ArrayList<>();
+        for (int r : order) {
+            Rule<T, A> rule = rules.get(r);
+            Integer[] ids = Arrays.stream(ruleCheckIds[r]).boxed().toArray(Integer[]::new);
+            Arrays.sort(ids, Comparator.comparingDouble(id -> scores[id]));
+            CompiledRule<A> compiled = new CompiledRule<>(r, rule.action,
+                Arrays.stream(ids).mapToInt(Integer::intValue).toArray());
+            if (rule.dispatchKey == null) {
+                // 通配规则按优先级合并进每个桶，匹配时只需查一个桶
+                wildcard.add(compiled);
+                for (List<CompiledRule<A>> bucket : keyed.values()) {
+                    bucket.add(compiled);
+                }
+            } else {
+                keyed.get(rule.dispatchKey).add(compiled);
+            }
+        }
+
+        int[] keys = keyed.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        CompiledRule<A>[][] buckets = (CompiledRule<A>[][]) new CompiledRule<?>[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            buckets[i] = toArray(keyed.get(keys[i]));
+        }
+        return new Plan<>(keys, buckets, toArray(wildcard));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <A> CompiledRule<A>[] toArray(List<CompiledRule<A>> rules) {
+        return rules.toArray((CompiledRule<A>[]) new CompiledRule<?>[rules.size()]);
+    }
+
+    /**
+     * 5. 各规则的命中次数，按声明顺序
+     */
+    public Map<String, Long> hitCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int r = 0; r < rules.size(); r++) {
+            counts.put(rules.get(r).name, ruleHits[r].sum());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /** 按 key 合并后的条件个数 */
+    public int checkCount() {
+        return checks.size();
+    }
+
+    /** 当前编译结果中指定规则的条件求值顺序，便于观察优化效果 */
+    public List<String> checkOrder(String ruleName) {
+        Plan<A> current = plan;
+        List<CompiledRule<A>> all = new ArrayList<>(Arrays.asList(current.wildcard));
+        for (CompiledRule<A>[] bucket : current.buckets) {
+            all.addAll(Arrays.asList(bucket));
+        }
+        for (CompiledRule<A> compiled : all) {
+            if (rules.get(compiled.ruleIndex).name.equals(ruleName)) {
+                List<String> keys = new ArrayList<>();
+                for (int id : compiled.checkIds) {
+                    keys.add(checks.get(id).key);
+                }
+                return keys;
+            }
+        }
+        throw new IllegalArgumentException("Unknown rule: " + ruleName);
+    }
+}
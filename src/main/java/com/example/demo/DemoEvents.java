@@ -0,0 +1,139 @@
+package com.example.demo;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * 项目自定义的JFR事件
+ *
+ * 持续录制时，超过阈值的锁等待、I/O调用会被记录下来，不需要临时挂载profiler。
+ * 阈值和是否采集调用栈都可以在录制配置中按事件名覆盖，例如：
+ * <pre>
+ * jcmd &lt;pid&gt; JFR.start settings=default.jfc
+ * com.example.demo.LockAcquire#threshold=1 ms
+ * com.example.demo.CacheOperation#enabled=true
+ * </pre>
+ * 没有录制或事件被关闭时，commit 前的 shouldCommit() 检查几乎没有开销。
+ */
+public final class DemoEvents {
+
+    private DemoEvents() {
+    }
+
+    /**
+     * 1. 监视器获取：事件时长就是等待进入 synchronized 块的时间
+     */
+    @Name("com.example.demo.LockAcquire")
+    @Label("Lock Acquire")
+    @Description("Time spent waiting to enter a project monitor")
+    @Category({"Demo", "Locks"})
+    @Threshold("10 ms")
+    @StackTrace(true)
+    public static final class LockAcquireEvent extends Event {
+        @Label("Lock")
+        public String lockName;
+    }
+
+    /**
+     * 2. 文件I/O调用
+     */
+    @Name("com.example.demo.FileIo")
+    @Label("File I/O")
+    @Description("Blocking file read or write performed by the project")
+    @Category({"Demo", "I/O"})
+    @Threshold("20 ms")
+    @StackTrace(true)
+    public static final class FileIoEvent extends Event {
+        @Label("Operation")
+        public String operation;
+
+        @Label("Path")
+        public String path;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    /**
+     * 3. 缓存操作：调用频率很高，默认关闭，需要时在录制配置中打开
+     */
+    @Name("com.example.demo.CacheOperation")
+    @Label("Cache Operation")
+    @Category({"Demo", "Cache"})
+    @Enabled(false)
+    @Threshold("0 ms")
+    @StackTrace(false)
+    public static final class CacheEvent extends Event {
+        @Label("Cache")
+        public String cache;
+
+        @Label("Operation")
+        public String operation;
+
+        @Label("Key")
+        public String key;
+
+        @Label("Hit")
+        public boolean hit;
+
+        @Label("Size After")
+        public int sizeAfter;
+    }
+
+    /**
+     * 开始计时一次锁等待，进入同步块后调用 {@link #lockAcquired}
+     */
+    public static LockAcquireEvent beginLock(String lockName) {
+        LockAcquireEvent event = new LockAcquireEvent();
+        event.lockName = lockName;
+        event.begin();
+        return event;
+    }
+
+    public static void lockAcquired(LockAcquireEvent event) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.commit();
+        }
+    }
+
+    public static FileIoEvent beginIo(String operation, String path) {
+        FileIoEvent event = new FileIoEvent();
+        event.operation = operation;
+        event.path = path;
+        event.begin();
+        return event;
+    }
+
+    public static void endIo(FileIoEvent event, long bytes, boolean succeeded) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = bytes;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+
+    public static void cacheOperation(String cache, String operation, String key, boolean hit, int sizeAfter) {
+        CacheEvent event = new CacheEvent();
+        if (event.isEnabled()) {
+            event.cache = cache;
+            event.operation = operation;
+            event.key = key;
+            event.hit = hit;
+            event.sizeAfter = sizeAfter;
+            event.commit();
+        }
+    }
+}
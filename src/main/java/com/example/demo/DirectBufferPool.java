@@ -0,0 +1,303 @@
+package com.example.demo;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按大小分级的堆外缓冲池
+ *
+ * 大块临时缓冲区从这里租用直接内存 ByteBuffer，用完归还后按大小级别复用，
+ * 不再在Java堆上分配巨型对象。池内所有缓冲区（使用中和空闲）的总容量受
+ * 全局预算约束，超出预算时按策略阻塞等待或立即失败。
+ */
+public class DirectBufferPool {
+
+    /** 预算耗尽时的获取策略 */
+    public enum AcquirePolicy {
+        /** 等待其他租约归还，超时后失败 */
+        BLOCK,
+        /** 立即失败 */
+        FAIL_FAST
+    }
+
+    private static final DirectBufferPool DEFAULT = new DirectBufferPool(
+        4 * 1024,
+        4 * 1024 * 1024,
+        Long.getLong("demo.buffer.budgetBytes", 256L * 1024 * 1024),
+        AcquirePolicy.valueOf(System.getProperty("demo.buffer.policy", AcquirePolicy.BLOCK.name()).toUpperCase()),
+        Long.getLong("demo.buffer.timeoutMillis", 5000L));
+
+    private final int minClassShift;
+    private final int maxSize;
+    private final long budgetBytes;
+    private final AcquirePolicy policy;
+    private final long timeoutNanos;
+    private final Queue<ByteBuffer>[] freeLists;
+
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong idleBytes = new AtomicLong();
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong poolHits = new AtomicLong();
+    private final AtomicLong allocations = new AtomicLong();
+    private final AtomicLong trimmed = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition released = waitLock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /**
+     * @param minSize       最小级别的容量，必须是2的幂
+     * @param maxSize       最大级别的容量，必须是2的幂
+     * @param budgetBytes   池内缓冲区总容量上限
+     * @param policy        预算耗尽时的策略
+     * @param timeoutMillis BLOCK策略下的最长等待时间
+     */
+    @SuppressWarnings("unchecked")
+    public DirectBufferPool(int minSize, int maxSize, long budgetBytes,
+                            AcquirePolicy policy, long timeoutMillis) {
+        if (Integer.bitCount(minSize) != 1 || Integer.bitCount(maxSize) != 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("size classes must be powers of two with min <= max");
+        }
+        if (budgetBytes < maxSize) {
+            throw new IllegalArgumentException("budget must hold at least one buffer of the largest class");
+        }
+        this.minClassShift = Integer.numberOfTrailingZeros(minSize);
+        this.maxSize = maxSize;
+        this.budgetBytes = budgetBytes;
+        this.policy = policy;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int classes = Integer.numberOfTrailingZeros(maxSize) - minClassShift + 1;
+        this.freeLists = (Queue<ByteBuffer>[]) new Queue<?>[classes];
+        for (int i = 0; i < classes; i++) {
+            freeLists[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    public static DirectBufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    /** 单次租用允许的最大字节数 */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private int classIndex(int size) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(shift - minClassShift, 0);
+    }
+
+    private int classCapacity(int classIndex) {
+        return 1 << (classIndex + minClassShift);
+    }
+
+    /**
+     * 1. 租用至少 size 字节的直接缓冲区，返回的缓冲区 limit 等于 size
+     */
+    public Lease acquire(int size) {
+        if (size <= 0 || size > maxSize) {
+            throw new IllegalArgumentException("size must be in (0, " + maxSize + "]: " + size);
+        }
+        acquisitions.incrementAndGet();
+        int index = classIndex(size);
+        int capacity = classCapacity(index);
+        long deadline = System.nanoTime() + timeoutNanos;
+
+        while (true) {
+            ByteBuffer buffer = freeLists[index].poll();
+            if (buffer != null) {
+                idleBytes.addAndGet(-capacity);
+                poolHits.incrementAndGet();
+                return new Lease(this, index, buffer, size);
+            }
+            if (tryReserve(capacity) || (trimIdle(capacity) && tryReserve(capacity))) {
+                allocations.incrementAndGet();
+                return new Lease(this, index, ByteBuffer.allocateDirect(capacity), size);
+            }
+            if (policy == AcquirePolicy.FAIL_FAST) {
+                failures.incrementAndGet();
+                throw new IllegalStateException("Buffer pool budget of " + budgetBytes
+                    + " bytes exhausted while acquiring " + capacity + " bytes");
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                failures.incrementAndGet();
+                throw new IllegalStateException("Timed out waiting for " + capacity + " bytes from buffer pool");
+            }
+            awaitRelease(index, capacity, remaining);
+        }
+    }
+
+    private boolean tryReserve(int capacity) {
+        while (true) {
+            long current = allocatedBytes.get();
+            if (current + capacity > budgetBytes) {
+                return false;
+            }
+            if (allocatedBytes.compareAndSet(current, current + capacity)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 2. 预算不足时丢弃其他级别的空闲缓冲区，把预算让给当前请求
+     */
+    private boolean trimIdle(int needed) {
+        long freed = 0;
+        for (int i = freeLists.length - 1; i >= 0 && freed < needed; i--) {
+            ByteBuffer idle;
+            while (freed < needed && (idle = freeLists[i].poll()) != null) {
+                int capacity = idle.capacity();
+                idleBytes.addAndGet(-capacity);
+                allocatedBytes.addAndGet(-capacity);
+                trimmed.incrementAndGet();
+                freed += capacity;
+            }
+        }
+        return freed > 0;
+    }
+
+    private void awaitRelease(int index, int capacity, long nanos) {
+        waits.incrementAndGet();
+        waitLock.lock();
+        waiters.incrementAndGet();
+        try {
+            // 登记为等待者之后再检查一次，避免错过在此之前发生的归还
+            if (freeLists[index].isEmpty() && idleBytes.get() == 0
+                    && allocatedBytes.get() + capacity > budgetBytes) {
+                released.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for buffer pool", e);
+        } finally {
+            waiters.decrementAndGet();
+            waitLock.unlock();
+        }
+    }
+
+    private void recycle(int index, ByteBuffer buffer) {
+        buffer.clear();
+        idleBytes.addAndGet(buffer.capacity());
+        freeLists[index].offer(buffer);
+        // 只有存在等待者时才加锁通知，归还的快路径保持无锁
+        if (waiters.get() > 0) {
+            waitLock.lock();
+            try {
+                released.signalAll();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 3. 引用计数的缓冲区租约，计数归零时缓冲区回到池中
+     */
+    public static final class Lease implements AutoCloseable {
+        private final DirectBufferPool pool;
+        private final int classIndex;
+        private final ByteBuffer buffer;
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        private Lease(DirectBufferPool pool, int classIndex, ByteBuffer buffer, int size) {
+            this.pool = pool;
+            this.classIndex = classIndex;
+            this.buffer = buffer;
+            buffer.clear().limit(size);
+        }
+
+        public ByteBuffer buffer() {
+            if (refCount.get() <= 0) {
+                throw new IllegalStateException("Lease already released");
+            }
+            return buffer;
+        }
+
+        /** 增加一个持有者，例如把缓冲区交给另一个线程继续处理 */
+        public Lease retain() {
+            while (true) {
+                int count = refCount.get();
+                if (count <= 0) {
+                    throw new IllegalStateException("Lease already released");
+                }
+                if (refCount.compareAndSet(count, count + 1)) {
+                    return this;
+                }
+            }
+        }
+
+        public void release() {
+            int count = refCount.decrementAndGet();
+            if (count == 0) {
+                pool.recycle(classIndex, buffer);
+            } else if (count < 0) {
+                refCount.incrementAndGet();
+                throw new IllegalStateException("Lease released more times than retained");
+            }
+        }
+
+        public int refCount() {
+            return refCount.get();
+        }
+
+        @Override
+        public void close() {
+            release();
+        }
+    }
+
+    /**
+     * 4. 池使用情况快照
+     */
+    public Stats stats() {
+        return new Stats(budgetBytes, allocatedBytes.get(), idleBytes.get(), acquisitions.get(),
+            poolHits.get(), allocations.get(), trimmed.get(), waits.get(), failures.get());
+    }
+
+    public static final class Stats {
+        public final long budgetBytes;
+        public final long allocatedBytes;
+        public final long idleBytes;
+        public final long acquisitions;
+        public final long poolHits;
+        public final long allocations;
+        public final long trimmed;
+        public final long waits;
+        public final long failures;
+
+        Stats(long budgetBytes, long allocatedBytes, long idleBytes, long acquisitions, long poolHits,
+              long allocations, long trimmed, long waits, long failures) {
+            this.budgetBytes = budgetBytes;
+            this.allocatedBytes = allocatedBytes;
+            this.idleBytes = idleBytes;
+            this.acquisitions = acquisitions;
+            this.poolHits = poolHits;
+            this.allocations = allocations;
+            this.trimmed = trimmed;
+            this.waits = waits;
+            this.failures = failures;
+        }
+
+        public long inUseBytes() {
+            return allocatedBytes - idleBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "DirectBufferPool{budget=" + budgetBytes + ", allocated=" + allocatedBytes
+                + ", inUse=" + inUseBytes() + ", idle=" + idleBytes + ", acquisitions=" + acquisitions
+                + ", hits=" + poolHits + ", allocations=" + allocations + ", trimmed=" + trimmed
+                + ", waits=" + waits + ", failures=" + failures + "}";
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 按行读取大文件
+ *
+ * 读取线程把文件按大块读入从 {@link DirectBufferPool} 租用的直接缓冲区，在缓冲区内
+ * 记录每行的起止位置，不复制行内容；每块的行组成一个 {@link LineBatch} 放入有界队列。
+ * 队列满时读取线程阻塞，因此同时存在的缓冲区数量固定，堆和堆外内存都不随文件大小增长。
+ * 行内容只在调用 {@link LineBatch#line} 时才按UTF-8解码。
+ * {@link Session#close} 会停止读取线程、归还队列中剩余批次的缓冲区并关闭文件。
+ */
+public class LineIngestor {
+
+    private static final int INITIAL_LINES = 256;
+
+    private static final MetricsRegistry.Counter INGEST_BYTES = MetricsRegistry.getDefault().counter("io.ingest.bytes");
+    private static final MetricsRegistry.Counter INGEST_LINES = MetricsRegistry.getDefault().counter("io.ingest.lines");
+    private static final MetricsRegistry.Timer INGEST_BLOCKED = MetricsRegistry.getDefault().timer("io.ingest.blocked");
+
+    private final DirectBufferPool pool;
+    private final int chunkSize;
+    private final int queueCapacity;
+
+    /**
+     * @param pool          读取缓冲区来源，最大级别同时也是单行的长度上限
+     * @param chunkSize     每次读取的块大小
+     * @param queueCapacity 队列中最多等待消费的批次数
+     */
+    public LineIngestor(DirectBufferPool pool, int chunkSize, int queueCapacity) {
+        if (chunkSize <= 0 || chunkSize > pool.getMaxSize()) {
+            throw new IllegalArgumentException("chunkSize must be in (0, " + pool.getMaxSize() + "]: " + chunkSize);
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * 1. 打开文件并启动读取线程；文件不存在等错误在调用线程上直接抛出
+     */
+    public Session open(Path file) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open " + file, e);
+        }
+        Session session = new Session(this, file, channel);
+        session.reader.start();
+        return session;
+    }
+
+    /**
+     * 2. 一块数据中的完整行；消费完必须关闭以归还缓冲区
+     */
+    public static final class LineBatch implements AutoCloseable {
+        private final DirectBufferPool.Lease lease;
+        private final ByteBuffer data;
+        private final int[] bounds;
+        private final int count;
+        private final long firstLineNumber;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private LineBatch(DirectBufferPool.Lease lease, ByteBuffer data, int[] bounds, int count, long firstLineNumber) {
+            this.lease = lease;
+            this.data = data;
+            this.bounds = bounds;
+            this.count = count;
+            this.firstLineNumber = firstLineNumber;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        /** 第一行在文件中的行号，从1开始 */
+        public long firstLineNumber() {
+            return firstLineNumber;
+        }
+
+        /** 行的字节长度，不含换行符 */
+        public int length(int index) {
+            checkIndex(index);
+            return bounds[2 * index + 1] - bounds[2 * index];
+        }
+
+        /** 行内容的只读视图，与批次共享同一块缓冲区 */
+        public ByteBuffer lineBuffer(int index) {
+            checkIndex(index);
+            ByteBuffer view = data.duplicate();
+            view.limit(bounds[2 * index + 1]).position(bounds[2 * index]);
+            return view.slice();
+        }
+
+        /** 按UTF-8解码为字符串 */
+        public String line(int index) {
+            ByteBuffer view = lineBuffer(index);
+            byte[] bytes = new byte[view.remaining()];
+            view.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void checkIndex(int index) {
+            if (closed.get()) {
+                throw new IllegalStateException("Batch already closed");
+            }
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("line " + index + " of " + count);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true) && lease != null) {
+                lease.release();
+            }
+        }
+    }
+
+    /** 读取结束的标记，每个消费方取到后放回，保证所有消费方都能结束 */
+    private static final LineBatch END = new LineBatch(null, null, new int[0], 0, 0);
+
+    /**
+     * 3. 一次读取过程：一个读取线程，任意数量的消费线程
+     */
+    public static final class Session implements AutoCloseable {
+        private final LineIngestor ingestor;
+        private final Path file;
+        private final FileChannel channel;
+        private final BlockingQueue<LineBatch> queue;
+        private final Thread reader;
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLong linesRead = new AtomicLong();
+        private final AtomicLong blockedNanos = new AtomicLong();
+        private volatile boolean closed;
+        private volatile Throwable failure;
+
+        private Session(LineIngestor ingestor, Path file, FileChannel channel) {
+            this.ingestor = ingestor;
+            this.file = file;
+            this.channel = channel;
+            this.queue = new ArrayBlockingQueue<>(ingestor.queueCapacity);
+            this.reader = new Thread(this::read, "line-ingest-" + file.getFileName());
+            this.reader.setDaemon(true);
+        }
+
+        /**
+         * 取下一批，读完时返回 null；读取线程失败时抛出其异常
+         */
+        public LineBatch take() {
+            if (closed) {
+                throw new IllegalStateException("Session already closed");
+            }
+            LineBatch batch;
+            try {
+                batch = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for lines", e);
+            }
+            if (batch != END) {
+                return batch;
+            }
+            queue.offer(END);
+            Throwable error = failure;
+            if (error instanceof IOException) {
+                throw new UncheckedIOException("Failed to read " + file, (IOException) error);
+            }
+            if (error != null) {
+                throw new IllegalStateException("Failed to read " + file, error);
+            }
+            return null;
+        }
+
+        /**
+         * 依次处理每一批直到读完，每批处理后立即关闭，返回处理的行数
+         */
+        public long forEachBatch(Consumer<? super LineBatch> consumer) {
+            long lines = 0;
+            LineBatch batch;
+            while ((batch = take()) != null) {
+                try (LineBatch current = batch) {
+                    consumer.accept(current);
+                    lines += current.size();
+                }
+            }
+            return lines;
+        }
+
+        public long bytesRead() {
+            return bytesRead.get();
+        }
+
+        public long linesRead() {
+            return linesRead.get();
+        }
+
+        /** 读取线程因队列已满而等待的总时间 */
+        public long blockedNanos() {
+            return blockedNanos.get();
+        }
+
+        private void read() {
+            DemoEvents.FileIoEvent event = DemoEvents.beginIo("ingest", file.toString());
+            DirectBufferPool pool = ingestor.pool;
+            DirectBufferPool.Lease lease = null;
+            try {
+                int capacity = ingestor.chunkSize;
+                lease = pool.acquire(capacity);
+                int carry = 0;
+                long lineNumber = 1;
+                while (!closed) {
+                    ByteBuffer buffer = lease.buffer();
+                    buffer.limit(capacity).position(carry);
+                    boolean eof = fill(buffer);
+                    int end = buffer.position();
+                    bytesRead.addAndGet(end - carry);
+                    INGEST_BYTES.add(end - carry);
+
+                    // 上一块留下的半行中没有换行符，只需扫描新读入的部分
+                    int[] bounds = new int[2 * INITIAL_LINES];
+                    int count = 0;
+                    int lineStart = 0;
+                    for (int i = carry; i < end; i++) {
+                        if (buffer.get(i) == '\n') {
+                            bounds = addLine(bounds, count++, lineStart, trimCr(buffer, lineStart, i));
+                            lineStart = i + 1;
+                        }
+                    }
+                    if (eof && lineStart < end) {
+                        bounds = addLine(bounds, count++, lineStart, trimCr(buffer, lineStart, end));
+                        lineStart = end;
+                    }
+
+                    // 先把末尾的半行复制到下一块缓冲区，再发布当前批次
+                    int tail = end - lineStart;
+                    DirectBufferPool.Lease next = null;
+                    if (!eof) {
+                        if (tail == capacity) {
+                            if (capacity >= pool.getMaxSize()) {
+                                throw new IllegalStateException("Line " + lineNumber + " is longer than "
+                                    + pool.getMaxSize() + " bytes");
+                            }
+                            capacity = Math.min(capacity * 2, pool.getMaxSize());
+                        }
+                        next = pool.acquire(capacity);
+                        ByteBuffer remainder = buffer.duplicate();
+                        remainder.limit(end).position(lineStart);
+                        next.buffer().clear();
+                        next.buffer().put(remainder);
+                    }
+
+                    DirectBufferPool.Lease current = lease;
+                    lease = next;
+                    carry = tail;
+                    if (count > 0) {
+                        ByteBuffer view = buffer.duplicate();
+                        view.clear();
+                        publish(new LineBatch(current, view.asReadOnlyBuffer(), bounds, count, lineNumber));
+                        lineNumber += count;
+                        linesRead.addAndGet(count);
+                        INGEST_LINES.add(count);
+                    } else {
+                        current.release();
+                    }
+                    if (eof) {
+                        break;
+                    }
+                }
+            } catch (ClosedByInterruptException | InterruptedException e) {
+                if (!closed) {
+                    failure = e;
+                }
+            } catch (IOException | RuntimeException e) {
+                // close() 中断正在 pool.acquire 中等待的读取线程时，acquire 的异常属于取消而不是失败
+                if (!closed || !(e.getCause() instanceof InterruptedException)) {
+                    failure = e;
+                }
+            } finally {
+                if (lease != null) {
+                    lease.release();
+                }
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+                DemoEvents.endIo(event, bytesRead.get(), failure == null);
+                if (!closed) {
+                    try {
+                        queue.put(END);
+                    } catch (InterruptedException e) {
+                        // 只有 close() 会中断读取线程，它会自己放入结束标记
+                    }
+                }
+            }
+        }
+
+        private boolean fill(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** 队列满时阻塞读取线程，这就是对读取速度的反压 */
+        private void publish(LineBatch batch) throws InterruptedException {
+            try {
+                if (!queue.offer(batch)) {
+                    long start = System.nanoTime();
+                    queue.put(batch);
+                    long blocked = System.nanoTime() - start;
+                    blockedNanos.addAndGet(blocked);
+                    INGEST_BLOCKED.record(blocked);
+                }
+            } catch (InterruptedException e) {
+                batch.close();
+                throw e;
+            }
+        }
+
+        /**
+         * 4. 停止读取并释放全部资源，可重复调用
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            reader.interrupt();
+            boolean interrupted = false;
+            while (reader.isAlive()) {
+                try {
+                    reader.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            LineBatch batch;
+            while ((batch = queue.poll()) != null) {
+                batch.close();
+            }
+            queue.offer(END);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static int trimCr(ByteBuffer buffer, int start, int end) {
+        return end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    private static int[] addLine(int[] bounds, int index, int start, int end) {
+        if (2 * index + 1 >= bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        bounds[2 * index] = start;
+        bounds[2 * index + 1] = end;
+        return bounds;
+    }
+}
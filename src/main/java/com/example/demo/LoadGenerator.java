@@ -0,0 +1,333 @@
+package com.example.demo;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 并发压测工具
+ *
+ * 两种模式：
+ * <ul>
+ *   <li>固定速率：第 k 次调用的计划开始时间是 start + k * interval，响应延迟从计划时间算起。
+ *       被测方法变慢时后续调用只会推迟而不会减少，延迟里包含排队时间，不会出现协调遗漏。</li>
+ *   <li>固定并发：每个线程调用完立即发起下一次，测的是最大吞吐，响应延迟等于服务时间。</li>
+ * </ul>
+ * 正式测量前先按同样方式预热，预热数据丢弃。分配量来自 HotSpot 的线程分配计数，
+ * 只统计压测线程本身。
+ */
+public final class LoadGenerator {
+
+    /** 被压测的一次调用，抛出的异常计为错误 */
+    @FunctionalInterface
+    public interface Scenario {
+        void run() throws Exception;
+    }
+
+    public enum Mode {
+        FIXED_RATE,
+        FIXED_CONCURRENCY
+    }
+
+    private final String name;
+    private final Scenario scenario;
+    private final Mode mode;
+    private final int threads;
+    private final double targetRate;
+    private final long warmupNanos;
+    private final long durationNanos;
+
+    private LoadGenerator(String name, Scenario scenario, Mode mode, int threads, double targetRate,
+                          long warmupNanos, long durationNanos) {
+        this.name = name;
+        this.scenario = scenario;
+        this.mode = mode;
+        this.threads = threads;
+        this.targetRate = targetRate;
+        this.warmupNanos = warmupNanos;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * 1. 以每秒 opsPerSecond 次的速率调用，threads 个线程分担
+     */
+    public static LoadGenerator fixedRate(String name, Scenario scenario, double opsPerSecond, int threads) {
+        if (!(opsPerSecond > 0)) {
+            throw new IllegalArgumentException("opsPerSecond must be positive: " + opsPerSecond);
+        }
+        checkThreads(threads);
+        return new LoadGenerator(name, scenario, Mode.FIXED_RATE, threads, opsPerSecond,
+            TimeUnit.SECONDS.toNanos(1), TimeUnit.SECONDS.toNanos(10));
+    }
+
+    /**
+     * 2. threads 个线程不停地调用
+     */
+    public static LoadGenerator fixedConcurrency(String name, Scenario scenario, int threads) {
+        checkThreads(threads);
+        return new LoadGenerator(name, scenario, Mode.FIXED_CONCURRENCY, threads, 0,
+            TimeUnit.SECONDS.toNanos(1), TimeUnit.SECONDS.toNanos(10));
+    }
+
+    private static void checkThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+    }
+
+    public LoadGenerator warmup(long time, TimeUnit unit) {
+        if (time < 0) {
+            throw new IllegalArgumentException("warmup must not be negative: " + time);
+        }
+        return new LoadGenerator(name, scenario, mode, threads, targetRate, unit.toNanos(time), durationNanos);
+    }
+
+    public LoadGenerator duration(long time, TimeUnit unit) {
+        if (time <= 0) {
+            throw new IllegalArgumentException("duration must be positive: " + time);
+        }
+        return new LoadGenerator(name, scenario, mode, threads, targetRate, warmupNanos, unit.toNanos(time));
+    }
+
+    /**
+     * 3. 预热后正式测量，阻塞直到所有线程结束
+     */
+    public Report run() {
+        if (warmupNanos > 0) {
+            new Phase(warmupNanos).execute();
+        }
+        Phase measured = new Phase(durationNanos);
+        measured.execute();
+        return new Report(this, measured);
+    }
+
+    /** 一轮压测：所有线程从同一时刻开始，共享计划序号和直方图 */
+    private final class Phase {
+        final long length;
+        final AtomicLong ticket = new AtomicLong();
+        final LatencyHistogram response = new LatencyHistogram();
+        final LatencyHistogram service = new LatencyHistogram();
+        final long[] operations = new long[threads];
+        final long[] errors = new long[threads];
+        final long[] allocated = new long[threads];
+        long elapsedNanos;
+
+        Phase(long length) {
+            this.length = length;
+        }
+
+        void execute() {
+            Thread[] workers = new Thread[threads];
+            // 留出启动线程的时间，保证所有线程都在开始时刻之前就绪
+            long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20);
+            for (int i = 0; i < threads; i++) {
+                int worker = i;
+                workers[i] = new Thread(() -> work(worker, start), "load-" + name + "-" + i);
+                workers[i].setDaemon(true);
+                workers[i].start();
+            }
+            for (Thread worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    for (Thread other : workers) {
+                        other.interrupt();
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while running load scenario " + name, e);
+                }
+            }
+            elapsedNanos = System.nanoTime() - start;
+        }
+
+        private void work(int worker, long start) {
+            long end = start + length;
+            parkUntil(start);
+            long allocatedBefore = allocatedBytes();
+            if (mode == Mode.FIXED_RATE) {
+                long interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / targetRate));
+                while (!Thread.currentThread().isInterrupted()) {
+                    long intended = start + ticket.getAndIncrement() * interval;
+                    if (intended >= end) {
+                        break;
+                    }
+                    parkUntil(intended);
+                    invoke(worker, intended);
+                }
+            } else {
+                while (!Thread.currentThread().isInterrupted() && System.nanoTime() < end) {
+                    invoke(worker, System.nanoTime());
+                }
+            }
+            long allocatedAfter = allocatedBytes();
+            allocated[worker] = allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore;
+        }
+
+        private void invoke(int worker, long intended) {
+            long begin = System.nanoTime();
+            try {
+                scenario.run();
+            } catch (Exception e) {
+                errors[worker]++;
+            }
+            long done = System.nanoTime();
+            operations[worker]++;
+            response.record(done - intended);
+            service.record(done - begin);
+        }
+    }
+
+    private static void parkUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            // 远离目标时间时让出CPU，接近时自旋，减少唤醒误差
+            if (remaining > TimeUnit.MICROSECONDS.toNanos(100)) {
+                LockSupport.parkNanos(remaining - TimeUnit.MICROSECONDS.toNanos(50));
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 4. 一次压测的结果，延迟单位为纳秒
+     */
+    public static final class Report {
+        public static final String CSV_HEADER = "scenario,mode,threads,targetRate,elapsedMillis,operations,errors,"
+            + "throughput,p50Nanos,p99Nanos,p999Nanos,maxNanos,serviceP50Nanos,serviceP99Nanos,"
+            + "serviceP999Nanos,serviceMaxNanos,allocatedBytes,bytesPerOp";
+
+        public final String scenario;
+        public final Mode mode;
+        public final int threads;
+        public final double targetRate;
+        public final long elapsedNanos;
+        public final long operations;
+        public final long errors;
+        /** 从计划开始时间算起的延迟 */
+        public final LatencyHistogram.Snapshot response;
+        /** 方法本身的执行时间 */
+        public final LatencyHistogram.Snapshot service;
+        /** 不支持线程分配计数时为 -1 */
+        public final long allocatedBytes;
+
+        private Report(LoadGenerator generator, Phase phase) {
+            this.scenario = generator.name;
+            this.mode = generator.mode;
+            this.threads = generator.threads;
+            this.targetRate = generator.targetRate;
+            this.elapsedNanos = phase.elapsedNanos;
+            long ops = 0;
+            long failed = 0;
+            long bytes = 0;
+            for (int i = 0; i < generator.threads; i++) {
+                ops += phase.operations[i];
+                failed += phase.errors[i];
+                bytes = bytes < 0 || phase.allocated[i] < 0 ? -1 : bytes + phase.allocated[i];
+            }
+            this.operations = ops;
+            this.errors = failed;
+            this.allocatedBytes = bytes;
+            this.response = phase.response.snapshot();
+            this.service = phase.service.snapshot();
+        }
+
+        /** 每秒完成的调用次数 */
+        public double throughput() {
+            return elapsedNanos == 0 ? 0 : operations * 1e9 / elapsedNanos;
+        }
+
+        public double bytesPerOperation() {
+            return allocatedBytes < 0 || operations == 0 ? -1 : (double) allocatedBytes / operations;
+        }
+
+        public String toCsvRow() {
+            return String.format(Locale.ROOT, "%s,%s,%d,%.1f,%d,%d,%d,%.1f,%d,%d,%d,%d,%d,%d,%d,%d,%d,%.1f",
+                csvField(scenario), mode, threads, targetRate, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                operations, errors, throughput(),
+                response.valueAtPercentile(50), response.valueAtPercentile(99), response.valueAtPercentile(99.9),
+                response.max(),
+                service.valueAtPercentile(50), service.valueAtPercentile(99), service.valueAtPercentile(99.9),
+                service.max(), allocatedBytes, bytesPerOperation());
+        }
+
+        public String toJson() {
+            return String.format(Locale.ROOT, "{\"scenario\":\"%s\",\"mode\":\"%s\",\"threads\":%d,"
+                    + "\"targetRate\":%.1f,\"elapsedMillis\":%d,\"operations\":%d,\"errors\":%d,\"throughput\":%.1f,"
+                    + "\"latencyNanos\":{\"p50\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d},"
+                    + "\"serviceNanos\":{\"p50\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d},"
+                    + "\"allocatedBytes\":%d,\"bytesPerOp\":%.1f}",
+                jsonString(scenario), mode, threads, targetRate, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                operations, errors, throughput(),
+                response.valueAtPercentile(50), response.valueAtPercentile(99), response.valueAtPercentile(99.9),
+                response.max(),
+                service.valueAtPercentile(50), service.valueAtPercentile(99), service.valueAtPercentile(99.9),
+                service.max(), allocatedBytes, bytesPerOperation());
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s [%s x%d] ops=%d errors=%d throughput=%.1f/s "
+                    + "p50=%.3fms p99=%.3fms p999=%.3fms max=%.3fms bytes/op=%.1f",
+                scenario, mode, threads, operations, errors, throughput(),
+                response.valueAtPercentile(50) / 1e6, response.valueAtPercentile(99) / 1e6,
+                response.valueAtPercentile(99.9) / 1e6, response.max() / 1e6, bytesPerOperation());
+        }
+    }
+
+    /**
+     * 5. 导出多次压测结果，便于比较发布前后的数据
+     */
+    public static String toCsv(List<Report> reports) {
+        StringBuilder out = new StringBuilder(Report.CSV_HEADER).append('\n');
+        for (Report report : reports) {
+            out.append(report.toCsvRow()).append('\n');
+        }
+        return out.toString();
+    }
+
+    public static String toJson(List<Report> reports) {
+        StringBuilder out = new StringBuilder("[");
+        for (int i = 0; i < reports.size(); i++) {
+            out.append(i == 0 ? "\n  " : ",\n  ").append(reports.get(i).toJson());
+        }
+        return out.append("\n]\n").toString();
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
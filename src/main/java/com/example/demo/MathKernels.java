@@ -0,0 +1,195 @@
+package com.example.demo;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 批量数值计算内核
+ *
+ * 全部基于 double[] 输入输出，没有装箱和逐元素I/O；循环不变量提前计算为常量，
+ * 网格计算按行拆分到 ForkJoin 线程池。另外提供带误差上界的查表近似实现，
+ * 适合对精度要求不高、调用极其频繁的场景。
+ */
+public final class MathKernels {
+
+    /** sin(PI) + cos(E)，原先在循环中重复计算的不变量 */
+    public static final double SIN_PI_PLUS_COS_E = Math.sin(Math.PI) + Math.cos(Math.E);
+
+    /** 网格元素数超过该值时并行计算 */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final int MIN_ROWS_PER_TASK = 16;
+
+    private MathKernels() {
+    }
+
+    /**
+     * 1. 用常量填充结果，代替在循环中重复求值
+     */
+    public static double[] constantFill(int count, double value) {
+        double[] result = new double[count];
+        Arrays.fill(result, value);
+        return result;
+    }
+
+    /**
+     * 2. 逐元素批量计算
+     */
+    public static void sqrt(double[] in, double[] out, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            out[i] = Math.sqrt(in[i]);
+        }
+    }
+
+    public static void sin(double[] in, double[] out, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            out[i] = Math.sin(in[i]);
+        }
+    }
+
+    public static void cos(double[] in, double[] out, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            out[i] = Math.cos(in[i]);
+        }
+    }
+
+    /**
+     * 3. 计算 sqrt(i * j) 网格，按行主序写入 out
+     *
+     * 利用 sqrt(i * j) = sqrt(i) * sqrt(j)，只需 rows + cols 次开方，内层循环
+     * 只剩一次乘法；结果与直接开方相差不超过几个ulp。
+     */
+    public static double[] sqrtProductGrid(int rows, int cols) {
+        return sqrtProductGrid(rows, cols, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public static double[] sqrtProductGrid(int rows, int cols, int parallelThreshold) {
+        if (rows < 0 || cols < 0) {
+            throw new IllegalArgumentException("Grid size must not be negative: " + rows + "x" + cols);
+        }
+        int size;
+        try {
+            size = Math.multiplyExact(rows, cols);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Grid " + rows + "x" + cols + " exceeds the maximum array size", e);
+        }
+        double[] rowRoots = sqrtRange(rows);
+        double[] colRoots = sqrtRange(cols);
+        double[] out = new double[size];
+        if (size >= parallelThreshold && rows > MIN_ROWS_PER_TASK) {
+            ForkJoinPool.commonPool().invoke(new OuterProductTask(rowRoots, colRoots, out, 0, rows));
+        } else {
+            outerProduct(rowRoots, colRoots, out, 0, rows);
+        }
+        return out;
+    }
+
+    private static double[] sqrtRange(int n) {
+        double[] roots = new double[n];
+        for (int i = 0; i < n; i++) {
+            roots[i] = Math.sqrt(i);
+        }
+        return roots;
+    }
+
+    private static void outerProduct(double[] rowValues, double[] colValues, double[] out, int fromRow, int toRow) {
+        int cols = colValues.length;
+        for (int i = fromRow; i < toRow; i++) {
+            double rowValue = rowValues[i];
+            int base = i * cols;
+            for (int j = 0; j < cols; j++) {
+                out[base + j] = rowValue * colValues[j];
+            }
+        }
+    }
+
+    private static final class OuterProductTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] rowValues;
+        private final double[] colValues;
+        private final double[] out;
+        private final int fromRow;
+        private final int toRow;
+
+        OuterProductTask(double[] rowValues, double[] colValues, double[] out, int fromRow, int toRow) {
+            this.rowValues = rowValues;
+            this.colValues = colValues;
+            this.out = out;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= MIN_ROWS_PER_TASK) {
+                outerProduct(rowValues, colValues, out, fromRow, toRow);
+                return;
+            }
+            int mid = (fromRow + toRow) >>> 1;
+            invokeAll(new OuterProductTask(rowValues, colValues, out, fromRow, mid),
+                      new OuterProductTask(rowValues, colValues, out, mid, toRow));
+        }
+    }
+
+    /**
+     * 4. 查表 + 线性插值的 sin/cos 近似
+     *
+     * 步长为 h 时线性插值的误差不超过 h² / 8 · max|sin''| = h² / 8，
+     * 4096 个区间时约为 2.9e-7。
+     */
+    public static final class TrigTable {
+        private static final double TWO_PI = 2 * Math.PI;
+
+        private final double[] table;
+        private final double step;
+        private final double inverseStep;
+        private final int intervals;
+
+        public TrigTable(int intervals) {
+            if (intervals < 4) {
+                throw new IllegalArgumentException("intervals must be at least 4: " + intervals);
+            }
+            this.intervals = intervals;
+            this.step = TWO_PI / intervals;
+            this.inverseStep = intervals / TWO_PI;
+            this.table = new double[intervals + 1];
+            for (int i = 0; i <= intervals; i++) {
+                table[i] = Math.sin(i * step);
+            }
+        }
+
+        /** 插值误差的理论上界 */
+        public double maxError() {
+            return step * step / 8;
+        }
+
+        public double sin(double x) {
+            double position = (x - TWO_PI * Math.floor(x / TWO_PI)) * inverseStep;
+            int index = (int) position;
+            if (index >= intervals) {
+                // 浮点取模后可能恰好落在 2π 上
+                index = intervals - 1;
+            }
+            double fraction = position - index;
+            return table[index] + (table[index + 1] - table[index]) * fraction;
+        }
+
+        public double cos(double x) {
+            return sin(x + Math.PI / 2);
+        }
+
+        public void sin(double[] in, double[] out, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                out[i] = sin(in[i]);
+            }
+        }
+
+        public void cos(double[] in, double[] out, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                out[i] = cos(in[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.demo;
+
+import java.lang.management.ManagementFactory;
+import java.util.Hashtable;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 进程内指标注册表
+ *
+ * 三种指标：计数器（LongAdder）、仪表（读取时回调）和计时器（{@link LatencyHistogram}）。
+ * 记录路径上只有原子加法，不加锁也不分配对象；计时器一次记录约为两次 System.nanoTime
+ * 加一次数组自增。指标按名字创建一次后缓存在调用方的静态字段里，热路径上不查表。
+ *
+ * 导出方式：
+ * <ul>
+ *   <li>JMX：每个指标注册为一个标准MBean，ObjectName 为 {@code <domain>:type=Counter,name=<名字>}</li>
+ *   <li>文本：{@link #snapshot()} 生成按名字排序的快照，可用 {@link #startReporting} 定期输出</li>
+ * </ul>
+ * 默认注册表导出到平台 MBeanServer，设置 -Ddemo.metrics.jmx=false 可关闭；
+ * -Ddemo.metrics.reportSeconds=N 时每 N 秒把快照写入日志。
+ */
+public class MetricsRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9_.-]+");
+
+    private static final MetricsRegistry DEFAULT = createDefault();
+
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+    private final String domain;
+    private volatile MBeanServer server;
+
+    public MetricsRegistry(String domain) {
+        this.domain = domain;
+    }
+
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    private static MetricsRegistry createDefault() {
+        MetricsRegistry registry = new MetricsRegistry("com.example.demo");
+        if (Boolean.parseBoolean(System.getProperty("demo.metrics.jmx", "true"))) {
+            registry.exportTo(ManagementFactory.getPlatformMBeanServer());
+        }
+        long period = Long.getLong("demo.metrics.reportSeconds", 0L);
+        if (period > 0) {
+            registry.startReporting(period, TimeUnit.SECONDS, snapshot -> logger.info("Metrics snapshot\n{}", snapshot));
+        }
+        return registry;
+    }
+
+    /** JMX标准MBean接口 */
+    public interface CounterMBean {
+        long getCount();
+    }
+
+    public interface GaugeMBean {
+        long getValue();
+    }
+
+    public interface TimerMBean {
+        long getCount();
+
+        double getMeanNanos();
+
+        long getP50Nanos();
+
+        long getP99Nanos();
+
+        long getP999Nanos();
+
+        long getMaxNanos();
+    }
+
+    private interface Metric {
+        void appendTo(StringBuilder out);
+    }
+
+    /**
+     * 1. 计数器
+     */
+    public static final class Counter implements Metric, CounterMBean {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long delta) {
+            count.add(delta);
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public void appendTo(StringBuilder out) {
+            out.append("counter ").append(name).append(' ').append(getCount());
+        }
+    }
+
+    /**
+     * 2. 仪表：读取时调用回调，同名重复注册会替换回调
+     */
+    public static final class Gauge implements Metric, GaugeMBean {
+        private final String name;
+        private volatile LongSupplier supplier;
+
+        private Gauge(String name, LongSupplier supplier) {
+            this.name = name;
+            this.supplier = supplier;
+        }
+
+        @Override
+        public long getValue() {
+            return supplier.getAsLong();
+        }
+
+        @Override
+        public void appendTo(StringBuilder out) {
+            out.append("gauge ").append(name).append(' ').append(getValue());
+        }
+    }
+
+    /**
+     * 3. 计时器，单位为纳秒
+     */
+    public static final class Timer implements Metric, TimerMBean {
+        private final String name;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        /** 返回开始时间，与 {@link #stop} 配对使用 */
+        public long start() {
+            return System.nanoTime();
+        }
+
+        public void stop(long startNanos) {
+            histogram.record(System.nanoTime() - startNanos);
+        }
+
+        public void record(long nanos) {
+            histogram.record(nanos);
+        }
+
+        public LatencyHistogram.Snapshot snapshot() {
+            return histogram.snapshot();
+        }
+
+        @Override
+        public long getCount() {
+            return snapshot().count();
+        }
+
+        @Override
+        public double getMeanNanos() {
+            return snapshot().mean();
+        }
+
+        @Override
+        public long getP50Nanos() {
+            return snapshot().valueAtPercentile(50);
+        }
+
+        @Override
+        public long getP99Nanos() {
+            return snapshot().valueAtPercentile(99);
+        }
+
+        @Override
+        public long getP999Nanos() {
+            return snapshot().valueAtPercentile(99.9);
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return snapshot().max();
+        }
+
+        @Override
+        public void appendTo(StringBuilder out) {
+            LatencyHistogram.Snapshot s = snapshot();
+            out.append("timer ").append(name)
+                .append(" count=").append(s.count())
+                .append(String.format(Locale.ROOT, " mean=%.3fms", s.mean() / 1e6))
+                .append(String.format(Locale.ROOT, " p50=%.3fms", s.valueAtPercentile(50) / 1e6))
+                .append(String.format(Locale.ROOT, " p99=%.3fms", s.valueAtPercentile(99) / 1e6))
+                .append(String.format(Locale.ROOT, " p999=%.3fms", s.valueAtPercentile(99.9) / 1e6))
+                .append(String.format(Locale.ROOT, " max=%.3fms", s.max() / 1e6));
+        }
+    }
+
+    public Counter counter(String name) {
+        return register(name, Counter.class, () -> new Counter(name));
+    }
+
+    public Timer timer(String name) {
+        return register(name, Timer.class, () -> new Timer(name));
+    }
+
+    public Gauge gauge(String name, LongSupplier supplier) {
+        Gauge gauge = register(name, Gauge.class, () -> new Gauge(name, supplier));
+        gauge.supplier = supplier;
+        return gauge;
+    }
+
+    private <M extends Metric> M register(String name, Class<M> type, Supplier<M> factory) {
+        if (!VALID_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid metric name: " + name);
+        }
+        boolean[] created = new boolean[1];
+        Metric metric = metrics.computeIfAbsent(name, key -> {
+            created[0] = true;
+            return factory.get();
+        });
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as "
+                + metric.getClass().getSimpleName());
+        }
+        MBeanServer target = server;
+        if (created[0] && target != null) {
+            registerMBean(target, name, metric);
+        }
+        return type.cast(metric);
+    }
+
+    /**
+     * 4. 把已有和之后创建的指标都注册到 MBeanServer
+     */
+    public synchronized void exportTo(MBeanServer mbeanServer) {
+        if (server != null) {
+            throw new IllegalStateException("Metrics are already exported");
+        }
+        server = mbeanServer;
+        metrics.forEach((name, metric) -> registerMBean(mbeanServer, name, metric));
+    }
+
+    ObjectName objectName(String name, Metric metric) throws JMException {
+        Hashtable<String, String> properties = new Hashtable<>();
+        properties.put("type", metric.getClass().getSimpleName());
+        properties.put("name", name);
+        return new ObjectName(domain, properties);
+    }
+
+    ObjectName objectName(String name) throws JMException {
+        return objectName(name, metrics.get(name));
+    }
+
+    private void registerMBean(MBeanServer mbeanServer, String name, Metric metric) {
+        try {
+            ObjectName objectName = objectName(name, metric);
+            if (!mbeanServer.isRegistered(objectName)) {
+                mbeanServer.registerMBean(metric, objectName);
+            }
+        } catch (JMException e) {
+            // 导出失败不影响指标记录
+            logger.warn("Failed to register metric {} with JMX", name, e);
+        }
+    }
+
+    /**
+     * 5. 按名字排序的文本快照，每行一个指标
+     */
+    public String snapshot() {
+        StringBuilder out = new StringBuilder();
+        for (Metric metric : new TreeMap<>(metrics).values()) {
+            metric.appendTo(out);
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * 定期把快照交给 sink，取消返回的 future 即停止
+     */
+    public ScheduledFuture<?> startReporting(long period, TimeUnit unit, Consumer<String> sink) {
+        return Reporting.SCHEDULER.scheduleAtFixedRate(() -> sink.accept(snapshot()), period, period, unit);
+    }
+
+    // 第一次定期输出时才创建调度线程
+    private static final class Reporting {
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
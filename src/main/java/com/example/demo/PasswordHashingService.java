@@ -0,0 +1,244 @@
+package com.example.demo;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 基于JDK PBKDF2 的口令哈希服务
+ *
+ * 每次哈希需要几十毫秒CPU，因此全部在独立的有界线程池中执行，请求线程只拿到
+ * CompletableFuture。队列满时新请求立即以 RejectedExecutionException 失败，
+ * 登录高峰时只会拒绝超出容量的部分，而不是占满所有CPU核。
+ * 迭代次数写在哈希串里，重新校准后旧哈希仍可验证，可用 needsRehash 逐步升级。
+ */
+public class PasswordHashingService implements AutoCloseable {
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BITS = 256;
+    private static final int MIN_ITERATIONS = 10_000;
+    private static final int MAX_ITERATIONS = 50_000_000;
+    private static final int CALIBRATION_ITERATIONS = 20_000;
+    private static final byte[] DUMMY_SALT = new byte[SALT_BYTES];
+
+    private final ExecutorService pool;
+    private final SecureRandom random = new SecureRandom();
+    private volatile int iterations;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param threads       哈希线程数
+     * @param queueCapacity 等待队列长度，超出后拒绝
+     * @param iterations    新哈希使用的迭代次数
+     */
+    public PasswordHashingService(int threads, int queueCapacity, int iterations) {
+        if (iterations < MIN_ITERATIONS || iterations > MAX_ITERATIONS) {
+            throw new IllegalArgumentException("iterations out of range: " + iterations);
+        }
+        this.iterations = iterations;
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "password-hash-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 1. 校准：测量本机单次哈希耗时，选出满足目标延迟的迭代次数并用于之后的新哈希
+     */
+    public int calibrate(long targetMillis) {
+        char[] sample = "calibration-password".toCharArray();
+        byte[] salt = new byte[SALT_BYTES];
+        // 先预热，让JIT编译HMAC相关代码
+        derive(sample, salt, CALIBRATION_ITERATIONS);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            derive(sample, salt, CALIBRATION_ITERATIONS);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        long target = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        long scaled = CALIBRATION_ITERATIONS * target / Math.max(best, 1);
+        iterations = (int) Math.max(MIN_ITERATIONS, Math.min(scaled, MAX_ITERATIONS));
+        return iterations;
+    }
+
+    /**
+     * 在哈希线程池中校准，不占用调用线程；完成前新哈希继续使用构造时的迭代次数
+     */
+    public CompletableFuture<Integer> calibrateAsync(long targetMillis) {
+        try {
+            return CompletableFuture.supplyAsync(() -> calibrate(targetMillis), pool);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * 2. 异步计算口令哈希，结果格式为 pbkdf2-sha256$迭代次数$盐$哈希
+     */
+    public CompletableFuture<String> hash(char[] password) {
+        char[] copy = password.clone();
+        return submit(() -> {
+            try {
+                byte[] salt = new byte[SALT_BYTES];
+                random.nextBytes(salt);
+                int rounds = iterations;
+                byte[] key = derive(copy, salt, rounds);
+                Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+                return PREFIX + "$" + rounds + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(key);
+            } finally {
+                Arrays.fill(copy, '\0');
+            }
+        });
+    }
+
+    /**
+     * 3. 异步验证口令，哈希串缺失或格式不正确时返回 false
+     *
+     * 这些情况下同样按当前迭代次数做一次推导，响应时间不会暴露用户是否存在。
+     */
+    public CompletableFuture<Boolean> verify(char[] password, String stored) {
+        char[] copy = password.clone();
+        return submit(() -> {
+            try {
+                String[] parts = stored == null ? new String[0] : stored.split("\\$");
+                byte[] salt = null;
+                byte[] expected = null;
+                int rounds = 0;
+                if (parts.length == 4 && PREFIX.equals(parts[0])) {
+                    try {
+                        rounds = Integer.parseInt(parts[1]);
+                        Base64.Decoder decoder = Base64.getDecoder();
+                        salt = decoder.decode(parts[2]);
+                        expected = decoder.decode(parts[3]);
+                    } catch (IllegalArgumentException e) {
+                        salt = null;
+                    }
+                }
+                // 拒绝被篡改成超大迭代次数的哈希串，避免拖垮哈希线程
+                if (salt == null || rounds < MIN_ITERATIONS || rounds > MAX_ITERATIONS) {
+                    derive(copy, DUMMY_SALT, iterations);
+                    return false;
+                }
+                byte[] actual = derive(copy, salt, rounds);
+                // 常量时间比较，避免时序侧信道
+                return MessageDigest.isEqual(expected, actual);
+            } finally {
+                Arrays.fill(copy, '\0');
+            }
+        });
+    }
+
+    /** 哈希使用的迭代次数低于当前配置，或哈希串缺失、无法解析时返回 true */
+    public boolean needsRehash(String stored) {
+        if (stored == null) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        try {
+            return parts.length != 4 || !PREFIX.equals(parts[0]) || Integer.parseInt(parts[1]) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        long enqueued = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.get();
+                } finally {
+                    record(System.nanoTime() - enqueued);
+                }
+            }, pool);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void record(long nanos) {
+        completed.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static byte[] derive(char[] password, byte[] salt, int rounds) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, rounds, KEY_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * 4. 吞吐和延迟指标（延迟包含排队时间）
+     */
+    public Stats stats() {
+        long done = completed.sum();
+        int queued = ((ThreadPoolExecutor) pool).getQueue().size();
+        return new Stats(done, rejected.sum(), queued,
+            done == 0 ? 0 : totalNanos.sum() / done, maxNanos.get());
+    }
+
+    public static final class Stats {
+        public final long completed;
+        public final long rejected;
+        public final int queued;
+        public final long averageNanos;
+        public final long maxNanos;
+
+        Stats(long completed, long rejected, int queued, long averageNanos, long maxNanos) {
+            this.completed = completed;
+            this.rejected = rejected;
+            this.queued = queued;
+            this.averageNanos = averageNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "PasswordHashingService{completed=" + completed + ", rejected=" + rejected
+                + ", queued=" + queued + ", avgMs=" + TimeUnit.NANOSECONDS.toMillis(averageNanos)
+                + ", maxMs=" + TimeUnit.NANOSECONDS.toMillis(maxNanos) + "}";
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -1,13 +1,30 @@
 package com.example.demo;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * 这个类包含各种性能问题，用于测试性能分析能力
  */
 public class PerformanceIssuesDemo {
     
+    private static final Logger logger = LoggerFactory.getLogger(PerformanceIssuesDemo.class);
+    
     /**
      * 1. 低效的集合操作
      */
@@ -80,23 +97,20 @@ public class PerformanceIssuesDemo {
     }
     
     /**
-     * 6. 低效的循环
+     * 6. 低效的循环（网格计算已改为批量内核）
      */
-    public void inefficientLoop() {
+    public double[] inefficientLoop() {
         List<String> list = Arrays.asList("a", "b", "c", "d", "e");
         
         // 在循环条件中调用方法
         for (int i = 0; i < list.size(); i++) {
-            System.out.println(list.get(i));
+            logger.info("{}", list.get(i));
         }
         
-        // 嵌套循环中的重复计算
-        for (int i = 0; i < 100; i++) {
-            for (int j = 0; j < 100; j++) {
-                double result = Math.sqrt(i * j); // 重复的数学计算
-                System.out.println(result);
-            }
-        }
+        // sqrt(i * j) 网格一次性批量计算，不再逐个输出
+        double[] grid = MathKernels.sqrtProductGrid(100, 100);
+        logger.info("Computed {} grid values", grid.length);
+        return grid;
     }
     
     /**
@@ -114,10 +128,10 @@ public class PerformanceIssuesDemo {
     }
     
     /**
-     * 8. 不必要的同步
+     * 8. 只操作局部变量的方法不需要同步
      */
-    public synchronized void unnecessarySynchronization(int value) {
-        // 只是简单的局部变量操作，不需要同步
+    public void unnecessarySynchronization(int value) {
+        // 只是简单的局部变量操作，去掉 synchronized 后不再竞争对象监视器
         int localVar = value * 2;
         System.out.println(localVar);
     }
@@ -135,36 +149,208 @@ public class PerformanceIssuesDemo {
         }
     }
     
+    private static final MetricsRegistry.Timer WRITE_TIMER = MetricsRegistry.getDefault().timer("io.write");
+    private static final MetricsRegistry.Counter WRITE_BYTES = MetricsRegistry.getDefault().counter("io.write.bytes");
+    
     /**
      * 10. 低效的I/O操作
      */
     public void inefficientIO() {
+        inefficientIO(new java.io.File("output.txt"));
+    }
+    
+    /** 写到指定文件，便于在临时目录中运行 */
+    void inefficientIO(java.io.File file) {
+        DemoEvents.FileIoEvent event = DemoEvents.beginIo("write", file.getPath());
+        long start = WRITE_TIMER.start();
+        long written = 0;
+        boolean succeeded = false;
         try {
             // 没有使用缓冲，频繁的系统调用
-            java.io.FileWriter writer = new java.io.FileWriter("output.txt");
+            java.io.FileWriter writer = new java.io.FileWriter(file);
             
             for (int i = 0; i < 10000; i++) {
-                writer.write("Line " + i + "\n"); // 每次写入都是系统调用
+                String line = "Line " + i + "\n";
+                writer.write(line); // 每次写入都是系统调用
             }
             
             writer.close();
+            succeeded = true;
             
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            // 按编码后落盘的字节数记录，而不是字符数；文件打开时已被截断
+            written = file.length();
+            DemoEvents.endIo(event, written, succeeded);
+            WRITE_TIMER.stop(start);
+            WRITE_BYTES.add(written);
+        }
+    }
+    
+    private static final Map<String, Object> cache = new ConcurrentHashMap<>();
+    
+    private static final MetricsRegistry.Counter CACHE_HITS = MetricsRegistry.getDefault().counter("cache.performance.hits");
+    private static final MetricsRegistry.Counter CACHE_MISSES = MetricsRegistry.getDefault().counter("cache.performance.misses");
+    private static final MetricsRegistry.Counter CACHE_PUTS = MetricsRegistry.getDefault().counter("cache.performance.puts");
+    private static final MetricsRegistry.Counter CACHE_REMOVES = MetricsRegistry.getDefault().counter("cache.performance.removes");
+    private static final MetricsRegistry.Timer SNAPSHOT_TIMER = MetricsRegistry.getDefault().timer("cache.performance.snapshot");
+    
+    // 最近一次的快照（启动时加载的或后台刚写出的），只用于未命中时的懒加载
+    private static volatile CacheSnapshot warmSnapshot;
+    private static volatile boolean writingSnapshot;
+    private static final AtomicBoolean snapshotsEnabled = new AtomicBoolean();
+    // 快照里还有、但已从缓存删除的键：懒加载和写快照时都跳过，避免复活；
+    // 重新写入该键或写出不含它的新快照后清除。值为记录序号，写快照期间重新记下的墓碑不会被误清
+    private static final ConcurrentMap<String, Long> removedKeys = new ConcurrentHashMap<>();
+    private static final AtomicLong tombstoneSequence = new AtomicLong();
+    private static final LongAdder warmLookups = new LongAdder();
+    private static final LongAdder warmHits = new LongAdder();
+    
+    static {
+        MetricsRegistry.getDefault().gauge("cache.performance.size", cache::size);
+        String snapshotFile = System.getProperty("demo.cache.snapshotFile");
+        if (snapshotFile != null) {
+            enableSnapshots(Paths.get(snapshotFile),
+                Long.getLong("demo.cache.snapshotSeconds", 60L), TimeUnit.SECONDS);
         }
     }
     
     /**
      * 11. 内存泄漏风险
+     *
+     * 设置 -Ddemo.cache.snapshotFile 后缓存会定期（-Ddemo.cache.snapshotSeconds，默认60秒）
+     * 在后台写快照；下次启动时映射该快照，缓存未命中时再从快照中按键加载，启动后立即有热数据。
      */
-    private static final Map<String, Object> cache = new HashMap<>();
-    
     public void potentialMemoryLeak(String key, Object value) {
         // 无限制地向静态Map添加数据，可能导致内存泄漏
-        cache.put(key, value);
+        if (value == null) {
+            removeCached(key);
+            return;
+        }
+        Object previous = cache.put(key, value);
+        removedKeys.remove(key);
+        CACHE_PUTS.increment();
+        DemoEvents.cacheOperation("PerformanceIssuesDemo.cache", "put", key, previous != null, cache.size());
         // 没有清理机制
     }
     
+    private void removeCached(String key) {
+        // 快照里有这个键时先记墓碑再删除，中间的懒加载不会把旧值读回来
+        CacheSnapshot snapshot = warmSnapshot;
+        if (snapshot != null && snapshot.containsKey(key)) {
+            addTombstone(key);
+        }
+        Object previous = cache.remove(key);
+        // 正在写的快照可能已经带上了这个键；写完后换上的新快照同理
+        if (writingSnapshot) {
+            addTombstone(key);
+        } else {
+            CacheSnapshot current = warmSnapshot;
+            if (current != snapshot && current.containsKey(key)) {
+                addTombstone(key);
+            }
+        }
+        CACHE_REMOVES.increment();
+        DemoEvents.cacheOperation("PerformanceIssuesDemo.cache", "remove", key, previous != null, cache.size());
+    }
+    
+    private static void addTombstone(String key) {
+        removedKeys.put(key, tombstoneSequence.incrementAndGet());
+    }
+    
+    static int tombstoneCount() {
+        return removedKeys.size();
+    }
+    
+    public Object getCached(String key) {
+        Object value = cache.get(key);
+        CacheSnapshot snapshot = warmSnapshot;
+        if (value == null && snapshot != null && !removedKeys.containsKey(key)) {
+            value = snapshot.get(key);
+            warmLookups.increment();
+            if (value != null) {
+                warmHits.increment();
+                Object raced = cache.putIfAbsent(key, value);
+                if (raced != null) {
+                    value = raced;
+                } else if (removedKeys.containsKey(key)) {
+                    // 加载期间被删除
+                    cache.remove(key, value);
+                    value = null;
+                }
+            }
+        }
+        (value != null ? CACHE_HITS : CACHE_MISSES).increment();
+        DemoEvents.cacheOperation("PerformanceIssuesDemo.cache", "get", key, value != null, cache.size());
+        return value;
+    }
+    
+    /**
+     * 打开已有快照用于懒加载，并按固定间隔在后台写新快照；取消返回的 future 即停止写快照。
+     * 只能调用一次，再次调用抛出 IllegalStateException
+     */
+    static ScheduledFuture<?> enableSnapshots(Path file, long period, TimeUnit unit) {
+        if (!snapshotsEnabled.compareAndSet(false, true)) {
+            throw new IllegalStateException("Cache snapshots are already enabled");
+        }
+        if (Files.exists(file)) {
+            try {
+                CacheSnapshot snapshot = CacheSnapshot.open(file);
+                warmSnapshot = snapshot;
+                logger.info("Warm-starting cache from {} with {} entries", file, snapshot.size());
+            } catch (RuntimeException e) {
+                logger.warn("Ignoring unreadable cache snapshot {}", file, e);
+            }
+        }
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        metrics.gauge("cache.performance.warmLookups", warmLookups::sum);
+        metrics.gauge("cache.performance.warmHits", warmHits::sum);
+        metrics.gauge("cache.performance.warmHitRatePercent", () -> Math.round(warmHitRate() * 100));
+        return SnapshotScheduler.SCHEDULER.scheduleWithFixedDelay(() -> writeSnapshot(file), period, period, unit);
+    }
+    
+    /** 快照懒加载的累计命中率，换用新快照后继续累计 */
+    public static double warmHitRate() {
+        long lookups = warmLookups.sum();
+        return lookups == 0 ? 0 : (double) warmHits.sum() / lookups;
+    }
+    
+    /**
+     * 写一次快照；失败只记录日志，下个周期重试。
+     * 启用快照后，写成功的文件替换当前的懒加载快照：之后只从新快照带入条目，
+     * 写之前记下的墓碑在新快照里已不存在，随之清除
+     */
+    static synchronized CacheSnapshot.WriteResult writeSnapshot(Path file) {
+        long start = SNAPSHOT_TIMER.start();
+        Map<String, Long> excluded = new HashMap<>(removedKeys);
+        writingSnapshot = true;
+        try {
+            CacheSnapshot.WriteResult result = CacheSnapshot.write(cache, removedKeys.keySet(), warmSnapshot, file);
+            logger.debug("Cache snapshot written: {}", result);
+            if (snapshotsEnabled.get()) {
+                warmSnapshot = CacheSnapshot.open(file);
+                excluded.forEach(removedKeys::remove);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            logger.warn("Failed to write cache snapshot {}", file, e);
+            return null;
+        } finally {
+            writingSnapshot = false;
+            SNAPSHOT_TIMER.stop(start);
+        }
+    }
+    
+    // 第一次启用快照时才创建后台线程
+    private static final class SnapshotScheduler {
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
     /**
      * 12. 低效的排序
      */
@@ -196,17 +382,10 @@ public class PerformanceIssuesDemo {
     }
     
     /**
-     * 13. 不必要的计算
+     * 13. 循环不变量外提
      */
-    public void unnecessaryComputations() {
-        List<Double> results = new ArrayList<>();
-        
-        for (int i = 0; i < 1000; i++) {
-            // 在循环中重复计算常量
-            double pi = Math.PI;
-            double e = Math.E;
-            double result = Math.sin(pi) + Math.cos(e);
-            results.add(result);
-        }
+    public double[] unnecessaryComputations() {
+        // 循环不变量只计算一次，结果直接写入原始类型数组
+        return MathKernels.constantFill(1000, MathKernels.SIN_PI_PLUS_COS_E);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,317 @@
+package com.example.demo;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * 不可变的持久化向量（32路前缀树 + 尾部缓冲）
+ *
+ * 复制只是复制引用，O(1)；追加和按下标更新只复制从根到叶子的一条路径，
+ * O(log32 n)，其余节点在新旧版本之间共享。批量构建使用 {@link Transient}，
+ * 在同一个构建器内原地修改自己创建的节点，避免每次追加都复制路径。
+ */
+public final class PersistentVector<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    /**
+     * 树节点；edit 标记创建它的构建器，只有同一个构建器可以原地修改它
+     */
+    private static final class Node {
+        final Object edit;
+        final Object[] array;
+
+        Node(Object edit, Object[] array) {
+            this.edit = edit;
+            this.array = array;
+        }
+
+        Node(Object edit) {
+            this(edit, new Object[WIDTH]);
+        }
+    }
+
+    private static final Node EMPTY_NODE = new Node(null);
+    private static final Object[] EMPTY_TAIL = new Object[0];
+    private static final PersistentVector<?> EMPTY =
+        new PersistentVector<>(0, BITS, EMPTY_NODE, EMPTY_TAIL);
+
+    private final int size;
+    private final int shift;
+    private final Node root;
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Node root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    public static <E> PersistentVector<E> of(Collection<? extends E> items) {
+        Transient<E> builder = PersistentVector.<E>empty().asTransient();
+        for (E item : items) {
+            builder.add(item);
+        }
+        return builder.persistent();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private int tailOffset() {
+        return tailOffset(size);
+    }
+
+    private static int tailOffset(int size) {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] arrayFor(int index) {
+        if (index >= tailOffset()) {
+            return tail;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.array[(index >>> level) & MASK];
+        }
+        return node.array;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (E) arrayFor(index)[index & MASK];
+    }
+
+    /**
+     * 1. 追加元素，返回新版本，原版本不变
+     */
+    public PersistentVector<E> plus(E item) {
+        if (size - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = item;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+        Node tailNode = new Node(null, tail);
+        Node newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            // 根节点已满，树增高一层
+            newRoot = new Node(null);
+            newRoot.array[0] = root;
+            newRoot.array[1] = newPath(null, shift, tailNode);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(size, shift, root, tailNode);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[] {item});
+    }
+
+    private static Node pushTail(int size, int level, Node parent, Node tailNode) {
+        int subIndex = ((size - 1) >>> level) & MASK;
+        Node copy = new Node(null, parent.array.clone());
+        Node insert;
+        if (level == BITS) {
+            insert = tailNode;
+        } else {
+            Node child = (Node) parent.array[subIndex];
+            insert = child != null
+                ? pushTail(size, level - BITS, child, tailNode)
+                : newPath(null, level - BITS, tailNode);
+        }
+        copy.array[subIndex] = insert;
+        return copy;
+    }
+
+    private static Node newPath(Object edit, int level, Node node) {
+        if (level == 0) {
+            return node;
+        }
+        Node path = new Node(edit);
+        path.array[0] = newPath(edit, level - BITS, node);
+        return path;
+    }
+
+    /**
+     * 2. 替换指定下标的元素，返回新版本，只复制一条路径
+     */
+    public PersistentVector<E> with(int index, E item) {
+        if (index == size) {
+            return plus(item);
+        }
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = item;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, assoc(shift, root, index, item), tail);
+    }
+
+    private static Node assoc(int level, Node node, int index, Object item) {
+        Node copy = new Node(null, node.array.clone());
+        if (level == 0) {
+            copy.array[index & MASK] = item;
+        } else {
+            int subIndex = (index >>> level) & MASK;
+            copy.array[subIndex] = assoc(level - BITS, (Node) node.array[subIndex], index, item);
+        }
+        return copy;
+    }
+
+    public Transient<E> asTransient() {
+        return new Transient<>(this);
+    }
+
+    /**
+     * 3. 按32个元素一块遍历，避免每个元素都从根节点查找
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int index;
+            private int base = -WIDTH;
+            private Object[] block;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                if (index - base == WIDTH) {
+                    block = arrayFor(index);
+                    base += WIDTH;
+                }
+                return (E) block[index++ & MASK];
+            }
+        };
+    }
+
+    /**
+     * 可变构建器：用于批量加载，调用 persistent() 后失效
+     */
+    public static final class Transient<E> {
+        private final Object edit = new Object();
+        private boolean alive = true;
+        private int size;
+        private int shift;
+        private Node root;
+        private Object[] tail;
+
+        private Transient(PersistentVector<E> source) {
+            this.size = source.size;
+            this.shift = source.shift;
+            this.root = new Node(edit, source.root.array.clone());
+            this.tail = Arrays.copyOf(source.tail, WIDTH);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public Transient<E> add(E item) {
+            ensureAlive();
+            if (size - tailOffset(size) < WIDTH) {
+                tail[size & MASK] = item;
+                size++;
+                return this;
+            }
+            Node tailNode = new Node(edit, tail);
+            tail = new Object[WIDTH];
+            tail[0] = item;
+            if ((size >>> BITS) > (1 << shift)) {
+                Node newRoot = new Node(edit);
+                newRoot.array[0] = root;
+                newRoot.array[1] = newPath(edit, shift, tailNode);
+                root = newRoot;
+                shift += BITS;
+            } else {
+                root = pushTail(shift, root, tailNode);
+            }
+            size++;
+            return this;
+        }
+
+        private Node pushTail(int level, Node parent, Node tailNode) {
+            Node node = ensureEditable(parent);
+            int subIndex = ((size - 1) >>> level) & MASK;
+            Node insert;
+            if (level == BITS) {
+                insert = tailNode;
+            } else {
+                Node child = (Node) node.array[subIndex];
+                insert = child != null
+                    ? pushTail(level - BITS, child, tailNode)
+                    : newPath(edit, level - BITS, tailNode);
+            }
+            node.array[subIndex] = insert;
+            return node;
+        }
+
+        public Transient<E> set(int index, E item) {
+            ensureAlive();
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            if (index >= tailOffset(size)) {
+                tail[index & MASK] = item;
+            } else {
+                root = assoc(shift, root, index, item);
+            }
+            return this;
+        }
+
+        private Node assoc(int level, Node node, int index, Object item) {
+            Node editable = ensureEditable(node);
+            if (level == 0) {
+                editable.array[index & MASK] = item;
+            } else {
+                int subIndex = (index >>> level) & MASK;
+                editable.array[subIndex] = assoc(level - BITS, (Node) editable.array[subIndex], index, item);
+            }
+            return editable;
+        }
+
+        private Node ensureEditable(Node node) {
+            return node.edit == edit ? node : new Node(edit, node.array.clone());
+        }
+
+        public PersistentVector<E> persistent() {
+            ensureAlive();
+            alive = false;
+            Object[] trimmedTail = Arrays.copyOf(tail, size - tailOffset(size));
+            return new PersistentVector<>(size, shift, root, trimmedTail);
+        }
+
+        private void ensureAlive() {
+            if (!alive) {
+                throw new IllegalStateException("Transient used after persistent() call");
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.demo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于 {@link Cleaner} 的资源生命周期管理，替代 finalize()
+ *
+ * 资源通过显式 close() 释放；只有忘记关闭的资源才会在所有者被回收后由
+ * Cleaner线程兜底释放。按采样间隔记录句柄的分配位置，兜底释放时把
+ * 分配位置作为泄漏报告输出，便于找到没有关闭资源的调用方。
+ */
+public class ResourceCleaner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResourceCleaner.class);
+
+    private static final int MAX_RECENT_LEAKS = 16;
+
+    private static final ResourceCleaner DEFAULT =
+        new ResourceCleaner(Integer.getInteger("demo.resource.leakSampleInterval", 128));
+
+    /** 可显式关闭的资源句柄，close() 是幂等的 */
+    public interface Handle extends AutoCloseable {
+        boolean isClosed();
+
+        @Override
+        void close();
+    }
+
+    // 所有实例共用一个Cleaner线程，实例再多也不会多开线程
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final int sampleInterval;
+    private final AtomicLong registered = new AtomicLong();
+    private final AtomicLong closedExplicitly = new AtomicLong();
+    private final AtomicLong leaked = new AtomicLong();
+    private final Deque<Throwable> recentLeaks = new ArrayDeque<>();
+
+    /**
+     * @param sampleInterval 每多少个句柄记录一次分配位置，0表示不记录
+     */
+    public ResourceCleaner(int sampleInterval) {
+        if (sampleInterval < 0) {
+            throw new IllegalArgumentException("sampleInterval must not be negative: " + sampleInterval);
+        }
+        this.sampleInterval = sampleInterval;
+    }
+
+    public static ResourceCleaner getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 1. 为所有者注册释放动作
+     *
+     * release 不能引用 owner 本身，否则所有者永远不可达，Cleaner也永远不会触发。
+     */
+    public Handle register(Object owner, Runnable release) {
+        long sequence = registered.incrementAndGet();
+        Throwable allocationSite = null;
+        if (sampleInterval > 0 && sequence % sampleInterval == 0) {
+            allocationSite = new Throwable("Resource allocated by "
+                + Thread.currentThread().getName() + " for " + owner.getClass().getName());
+        }
+        State state = new State(this, release, allocationSite);
+        return new CleanableHandle(state, CLEANER.register(owner, state));
+    }
+
+    /**
+     * 2. 释放状态，由显式 close() 或 Cleaner线程执行且只执行一次
+     */
+    private static final class State implements Runnable {
+        private final ResourceCleaner manager;
+        private final Runnable release;
+        private final Throwable allocationSite;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        State(ResourceCleaner manager, Runnable release, Throwable allocationSite) {
+            this.manager = manager;
+            this.release = release;
+            this.allocationSite = allocationSite;
+        }
+
+        @Override
+        public void run() {
+            if (closed.compareAndSet(false, true)) {
+                // 走到这里说明没有显式关闭，是Cleaner在所有者被回收后触发的
+                manager.reportLeak(allocationSite);
+            }
+            try {
+                release.run();
+            } catch (RuntimeException e) {
+                // 不能让异常逃逸到Cleaner线程
+                logger.warn("Resource release failed", e);
+            }
+        }
+    }
+
+    private static final class CleanableHandle implements Handle {
+        private final State state;
+        private final Cleaner.Cleanable cleanable;
+
+        CleanableHandle(State state, Cleaner.Cleanable cleanable) {
+            this.state = state;
+            this.cleanable = cleanable;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return state.closed.get();
+        }
+
+        @Override
+        public void close() {
+            if (state.closed.compareAndSet(false, true)) {
+                state.manager.closedExplicitly.incrementAndGet();
+                // clean() 会注销Cleaner登记并在当前线程执行释放动作
+                cleanable.clean();
+            }
+        }
+    }
+
+    private void reportLeak(Throwable allocationSite) {
+        leaked.incrementAndGet();
+        if (allocationSite == null) {
+            logger.warn("Resource was not closed before becoming unreachable; "
+                + "allocation site was not sampled");
+            return;
+        }
+        synchronized (recentLeaks) {
+            if (recentLeaks.size() == MAX_RECENT_LEAKS) {
+                recentLeaks.removeFirst();
+            }
+            recentLeaks.addLast(allocationSite);
+        }
+        logger.warn("Resource was not closed before becoming unreachable", allocationSite);
+    }
+
+    public long getRegisteredCount() {
+        return registered.get();
+    }
+
+    public long getClosedCount() {
+        return closedExplicitly.get();
+    }
+
+    /** 由Cleaner兜底释放的句柄数量 */
+    public long getLeakCount() {
+        return leaked.get();
+    }
+
+    /** 最近采样到的泄漏分配位置 */
+    public List<Throwable> getRecentLeaks() {
+        synchronized (recentLeaks) {
+            return new ArrayList<>(recentLeaks);
+        }
+    }
+}
@@ -3,36 +3,112 @@ package com.example.demo;
 import java.io.*;
 import java.sql.*;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * 这个类包含常见的安全漏洞，用于测试安全代码分析
  */
 public class SecurityIssuesDemo {
     
+    private static final Logger logger = LoggerFactory.getLogger(SecurityIssuesDemo.class);
+    
     // 1. 硬编码的敏感信息
     private static final String DATABASE_PASSWORD = "admin123";
     private static final String API_KEY = "sk-1234567890abcdef";
     
+    private static final MetricsRegistry.Timer DB_TIMER = MetricsRegistry.getDefault().timer("db.getUserByName");
+    private static final MetricsRegistry.Counter DB_ERRORS = MetricsRegistry.getDefault().counter("db.getUserByName.errors");
+    
     /**
      * 2. SQL注入漏洞
      */
     public User getUserByName(String username) throws SQLException {
-        Connection conn = DriverManager.getConnection(
-            "jdbc:mysql://localhost:3306/testdb", 
-            "admin", 
-            DATABASE_PASSWORD
-        );
-        
-        // 直接拼接SQL，存在SQL注入风险
-        String sql = "SELECT * FROM users WHERE username = '" + username + "'";
-        Statement stmt = conn.createStatement();
-        ResultSet rs = stmt.executeQuery(sql);
-        
-        if (rs.next()) {
-            return new User(rs.getString("username"), rs.getString("email"));
+        long start = DB_TIMER.start();
+        try {
+            Connection conn = DriverManager.getConnection(
+                "jdbc:mysql://localhost:3306/testdb", 
+                "admin", 
+                DATABASE_PASSWORD
+            );
+            
+            // 直接拼接SQL，存在SQL注入风险
+            String sql = "SELECT * FROM users WHERE username = '" + username + "'";
+            Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery(sql);
+            
+            if (rs.next()) {
+                return new User(rs.getString("username"), rs.getString("email"));
+            }
+            
+            return null;
+        } catch (SQLException | RuntimeException e) {
+            DB_ERRORS.increment();
+            throw e;
+        } finally {
+            DB_TIMER.stop(start);
+        }
+    }
+    
+    /**
+     * 2.1 查过的用户保存在堆外存储里，再次查找不访问数据库；
+     * 设置 -Ddemo.users.storeFile 时存储映射到该文件，JVM 退出时关闭，重启后直接沿用。
+     * 返回的 User 归调用方所有；不想分配对象时用 {@link #findUser(String, UserStore.View)}
+     */
+    public User findUser(String username) throws SQLException {
+        UserStore.View view = UserStoreHolder.VIEW.get();
+        if (findUser(username, view) == null) {
+            return null;
         }
+        return new User(view.getUsername(), view.getEmail());
+    }
+    
+    /**
+     * 2.2 把结果读进调用方传入的视图并返回该视图，不存在时返回 null；
+     * 视图在下一次用它查找之前有效，命中存储时不分配对象
+     */
+    public UserStore.View findUser(String username, UserStore.View view) throws SQLException {
+        UserStore store = UserStoreHolder.STORE;
+        if (store.find(username, view)) {
+            return view;
+        }
+        User user = getUserByName(username);
+        if (user == null) {
+            return null;
+        }
+        store.put(user.getUsername(), user.getEmail());
+        return store.find(username, view) ? view : null;
+    }
+    
+    // 第一次查找时才分配堆外区域
+    private static final class UserStoreHolder {
+        static final UserStore STORE = createStore();
+        static final ThreadLocal<UserStore.View> VIEW = ThreadLocal.withInitial(STORE::newView);
         
-        return null;
+        private static UserStore createStore() {
+            int expectedUsers = Integer.getInteger("demo.users.expected", 100_000);
+            String file = System.getProperty("demo.users.storeFile");
+            if (file == null) {
+                return UserStore.inMemory(expectedUsers, expectedUsers * 48);
+            }
+            UserStore store = UserStore.open(java.nio.file.Paths.get(file), expectedUsers, expectedUsers * 48);
+            // 只有 close() 会写回干净关闭标记，否则每次重启都要重建索引
+            Runtime.getRuntime().addShutdownHook(new Thread(store::close, "user-store-shutdown"));
+            return store;
+        }
+    }
+    
+    /**
+     * 给 {@link #findUser(String, UserStore.View)} 用的视图，可以在同一线程内反复使用
+     */
+    public static UserStore.View newUserView() {
+        return UserStoreHolder.STORE.newView();
+    }
+    
+    static UserStore userStore() {
+        return UserStoreHolder.STORE;
     }
     
     /**
@@ -49,7 +125,7 @@ public class SecurityIssuesDemo {
             
             String line;
             while ((line = reader.readLine()) != null) {
-                System.out.println(line);
+                logger.info("{}", line);
             }
             
         } catch (IOException e) {
@@ -57,14 +133,20 @@ public class SecurityIssuesDemo {
         }
     }
     
+    private static final MetricsRegistry.Timer READ_TIMER = MetricsRegistry.getDefault().timer("io.read");
+    private static final MetricsRegistry.Counter READ_BYTES = MetricsRegistry.getDefault().counter("io.read.bytes");
+    
     /**
      * 4. 路径遍历漏洞
      */
     public String readFile(String filename) {
+        // 没有验证文件路径，可能导致路径遍历攻击
+        File file = new File("/app/data/" + filename);
+        DemoEvents.FileIoEvent event = DemoEvents.beginIo("read", file.getPath());
+        long start = READ_TIMER.start();
+        long read = 0;
+        boolean succeeded = false;
         try {
-            // 没有验证文件路径，可能导致路径遍历攻击
-            File file = new File("/app/data/" + filename);
-            
             Scanner scanner = new Scanner(file);
             StringBuilder content = new StringBuilder();
             
@@ -73,10 +155,17 @@ public class SecurityIssuesDemo {
             }
             
             scanner.close();
+            // 记录文件的字节数，content.length() 是解码后的字符数
+            read = file.length();
+            succeeded = true;
             return content.toString();
             
         } catch (FileNotFoundException e) {
             return "File not found";
+        } finally {
+            DemoEvents.endIo(event, read, succeeded);
+            READ_TIMER.stop(start);
+            READ_BYTES.add(read);
         }
     }
     
@@ -95,20 +184,45 @@ public class SecurityIssuesDemo {
         return token.toString();
     }
     
+    private static final BulkUserValidator VALIDATOR = new BulkUserValidator(1, 150);
+    
+    // 批量渲染HTML复用的缓冲区，超过上限后丢弃，避免一次大批量之后长期占用内存
+    private static final int MAX_RETAINED_HTML = 1 << 20;
+    private static final ThreadLocal<StringBuilder> HTML_BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+    
     /**
-     * 6. 不当的输入验证
+     * 6. 输入验证：校验邮箱格式和年龄范围，输出前做HTML转义
      */
-    public void processUserData(String email, int age) {
-        // 没有验证邮箱格式
-        System.out.println("Processing email: " + email);
-        
-        // 没有验证年龄范围
-        if (age > 0) {
-            System.out.println("Age: " + age);
+    public boolean processUserData(String email, int age) {
+        byte code = VALIDATOR.validate(email, age);
+        if (code != BulkUserValidator.OK) {
+            logger.warn("Rejected user data, error code {}", code);
+            return false;
         }
-        
-        // 直接输出用户输入，可能导致XSS（如果在web环境中）
-        System.out.println("<div>User input: " + email + "</div>");
+        String escaped = BulkUserValidator.appendEscaped(new StringBuilder(), email).toString();
+        logger.info("Processing email: {}, age: {}", escaped, age);
+        logger.info("<div>User input: {}</div>", escaped);
+        return true;
+    }
+    
+    /**
+     * 6.1 批量导入：一次扫描整列数据，只输出一条汇总和一段转义后的HTML
+     */
+    public BulkUserValidator.Result processUserData(String[] emails, int[] ages) {
+        BulkUserValidator.Result result = VALIDATOR.validate(emails, ages, emails.length);
+        logger.info("Validated {} records, {} valid", result.size(), result.validCount());
+        if (logger.isDebugEnabled()) {
+            StringBuilder html = HTML_BUFFER.get();
+            html.setLength(0);
+            // 日志异步格式化，这里先转成字符串，缓冲区才能立即复用
+            logger.debug("{}", BulkUserValidator.renderValid(emails, result, html).toString());
+            if (html.capacity() > MAX_RETAINED_HTML) {
+                HTML_BUFFER.remove();
+            } else {
+                html.setLength(0);
+            }
+        }
+        return result;
     }
     
     /**
@@ -119,6 +233,49 @@ public class SecurityIssuesDemo {
         return password != null && password.length() >= 4;
     }
     
+    /**
+     * 7.1 口令哈希在独立线程池中异步执行，请求线程不被PBKDF2占用
+     */
+    public CompletableFuture<String> hashPassword(String password) {
+        if (!isValidPassword(password)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Password does not meet policy"));
+        }
+        return PasswordHashing.SERVICE.hash(password.toCharArray());
+    }
+    
+    public CompletableFuture<Boolean> verifyPassword(String password, String storedHash) {
+        if (password == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return PasswordHashing.SERVICE.verify(password.toCharArray(), storedHash);
+    }
+    
+    // 第一次使用时才创建线程池；先用固定的迭代次数，校准在哈希线程池中异步进行
+    private static final class PasswordHashing {
+        static final PasswordHashingService SERVICE = createService();
+        
+        private static PasswordHashingService createService() {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            PasswordHashingService service = new PasswordHashingService(threads,
+                Integer.getInteger("demo.password.queueCapacity", 256),
+                Integer.getInteger("demo.password.iterations", 100_000));
+            service.calibrateAsync(Long.getLong("demo.password.targetMillis", 50L))
+                .whenComplete((iterations, error) -> {
+                    if (error != null) {
+                        logger.warn("Password hashing calibration failed, keeping {} iterations",
+                            service.getIterations(), error);
+                    } else {
+                        logger.info("Password hashing calibrated to {} iterations", iterations);
+                    }
+                });
+            MetricsRegistry metrics = MetricsRegistry.getDefault();
+            metrics.gauge("executor.passwordHashing.queued", () -> service.stats().queued);
+            metrics.gauge("executor.passwordHashing.completed", () -> service.stats().completed);
+            metrics.gauge("executor.passwordHashing.rejected", () -> service.stats().rejected);
+            return service;
+        }
+    }
+    
     /**
      * 8. 信息泄露
      */
@@ -130,8 +287,7 @@ public class SecurityIssuesDemo {
             }
         } catch (Exception e) {
             // 在异常消息中暴露敏感信息
-            System.err.println("Error occurred: " + e.getMessage());
-            e.printStackTrace(); // 可能暴露内部结构信息
+            logger.error("Error occurred: {}", e.getMessage(), e); // 可能暴露内部结构信息
         }
     }
     
@@ -152,25 +308,18 @@ public class SecurityIssuesDemo {
         }
     }
     
+    private static final SpoolStorage SPOOL = new SpoolStorage(
+        DirectBufferPool.getDefault(),
+        Integer.getInteger("demo.spool.memoryThreshold", 64 * 1024),
+        java.nio.file.Paths.get(System.getProperty("java.io.tmpdir")));
+    
     /**
-     * 10. 不安全的临时文件创建
+     * 10. 临时数据暂存：小数据只留在内存，超过阈值才写入仅属主可读写的临时文件
+     *
+     * 调用方使用完后必须关闭返回的句柄，关闭时会删除对应的临时文件。
      */
-    public File createTempFile(String content) {
-        try {
-            // 创建的临时文件可能有不安全的权限
-            File tempFile = File.createTempFile("temp", ".txt");
-            
-            FileWriter writer = new FileWriter(tempFile);
-            writer.write(content);
-            writer.close();
-            
-            // 没有设置适当的文件权限
-            return tempFile;
-            
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
-        }
+    public SpoolStorage.Spool createTempFile(String content) {
+        return SPOOL.spool(content.getBytes(java.nio.charset.StandardCharsets.UTF_8));
     }
     
     // 简单的User类用于演示
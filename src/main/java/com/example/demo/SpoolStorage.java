@@ -0,0 +1,351 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/**
+ * 内存优先的临时数据暂存
+ *
+ * 小数据只放在从 {@link DirectBufferPool} 租用的缓冲区中，不产生任何文件系统调用；
+ * 超过阈值后才落到一个临时文件里，文件只有属主可读写，并按预期大小预先扩展长度。
+ * 每个 {@link Spool} 都要显式关闭：关闭时归还缓冲区、关闭通道并删除文件；
+ * 忘记关闭的句柄由 {@link ResourceCleaner} 兜底清理并报告泄漏。
+ */
+public class SpoolStorage {
+
+    private static final int MIN_BUFFER = 4 * 1024;
+
+    private final DirectBufferPool pool;
+    private final int memoryThreshold;
+    private final Path directory;
+    private final ResourceCleaner cleaner;
+
+    /**
+     * @param pool            内存缓冲区来源
+     * @param memoryThreshold 超过该字节数后转存到文件，不能超过池的最大级别
+     * @param directory       临时文件所在目录
+     * @param cleaner         未关闭句柄的兜底清理
+     */
+    public SpoolStorage(DirectBufferPool pool, int memoryThreshold, Path directory, ResourceCleaner cleaner) {
+        if (memoryThreshold <= 0 || memoryThreshold > pool.getMaxSize()) {
+            throw new IllegalArgumentException("memoryThreshold must be in (0, " + pool.getMaxSize() + "]: "
+                + memoryThreshold);
+        }
+        this.pool = pool;
+        this.memoryThreshold = memoryThreshold;
+        this.directory = directory;
+        this.cleaner = cleaner;
+    }
+
+    public SpoolStorage(DirectBufferPool pool, int memoryThreshold, Path directory) {
+        this(pool, memoryThreshold, directory, ResourceCleaner.getDefault());
+    }
+
+    public Spool create() {
+        return create(0);
+    }
+
+    /**
+     * 1. 创建暂存句柄；expectedSize 超过阈值时直接使用文件，避免先写内存再复制
+     */
+    public Spool create(long expectedSize) {
+        Spool spool = new Spool(this);
+        if (expectedSize > memoryThreshold) {
+            spool.spillToFile(expectedSize);
+        } else {
+            spool.ensureMemory((int) Math.max(expectedSize, MIN_BUFFER));
+        }
+        return spool;
+    }
+
+    public Spool spool(byte[] data) {
+        Spool spool = create(data.length);
+        spool.write(data, 0, data.length);
+        return spool;
+    }
+
+    /**
+     * 句柄持有的底层资源，与 Spool 分开存放，Cleaner 兜底时不会引用 Spool 本身
+     */
+    private static final class Resources implements Runnable {
+        DirectBufferPool.Lease lease;
+        FileChannel channel;
+        Path file;
+
+        @Override
+        public void run() {
+            if (lease != null) {
+                lease.release();
+                lease = null;
+            }
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                channel = null;
+                file = null;
+            }
+        }
+    }
+
+    /**
+     * 2. 暂存句柄；写入不是线程安全的，读取在写完之后进行
+     */
+    public static final class Spool implements AutoCloseable {
+        private final SpoolStorage storage;
+        private final Resources resources = new Resources();
+        private final ResourceCleaner.Handle handle;
+        private long size;
+
+        private Spool(SpoolStorage storage) {
+            this.storage = storage;
+            this.handle = storage.cleaner.register(this, resources);
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public boolean isInMemory() {
+            return resources.channel == null;
+        }
+
+        public void write(byte[] data, int offset, int length) {
+            write(ByteBuffer.wrap(data, offset, length));
+        }
+
+        public void write(ByteBuffer data) {
+            checkOpen();
+            int length = data.remaining();
+            if (isInMemory() && size + length > storage.memoryThreshold) {
+                spillToFile(size + length);
+            }
+            if (isInMemory()) {
+                ensureMemory((int) size + length);
+                ByteBuffer target = resources.lease.buffer();
+                target.position((int) size);
+                target.put(data);
+            } else {
+                writeToChannel(data, size);
+            }
+            size += length;
+        }
+
+        private void ensureMemory(int needed) {
+            DirectBufferPool.Lease current = resources.lease;
+            if (current != null && current.buffer().capacity() >= needed) {
+                current.buffer().limit(current.buffer().capacity());
+                return;
+            }
+            // 按倍数增长，减少扩容时的复制次数；调用方保证 needed 不超过阈值
+            int capacity = Math.max(needed, MIN_BUFFER);
+            if (current != null) {
+                capacity = Math.max(capacity, Math.min(current.buffer().capacity() * 2, storage.memoryThreshold));
+            }
+            DirectBufferPool.Lease grown = storage.pool.acquire(capacity);
+            ByteBuffer target = grown.buffer();
+            target.limit(target.capacity());
+            if (current != null) {
+                ByteBuffer source = current.buffer().duplicate();
+                source.position(0).limit((int) size);
+                target.put(source);
+                current.release();
+            }
+            resources.lease = grown;
+        }
+
+        /**
+         * 3. 转存到文件：把内存中已有的数据写入文件后归还缓冲区
+         */
+        private void spillToFile(long expectedSize) {
+            try {
+                Path file = createOwnerOnlyFile(storage.directory);
+                resources.file = file;
+                resources.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                if (expectedSize > 0) {
+                    // 一次性扩展到预期长度，后续写入不再反复修改文件大小
+                    resources.channel.write(ByteBuffer.allocate(1), expectedSize - 1);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to create spool file", e);
+            }
+            DirectBufferPool.Lease lease = resources.lease;
+            if (lease != null) {
+                ByteBuffer buffered = lease.buffer().duplicate();
+                buffered.position(0).limit((int) size);
+                writeToChannel(buffered, 0);
+                lease.release();
+                resources.lease = null;
+            }
+        }
+
+        private void writeToChannel(ByteBuffer data, long position) {
+            try {
+                long offset = position;
+                while (data.hasRemaining()) {
+                    offset += resources.channel.write(data, offset);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write spool file", e);
+            }
+        }
+
+        /**
+         * 4. 以只读 ByteBuffer 读取：内存数据复制一份，文件数据使用内存映射
+         *
+         * 内存缓冲区在关闭后会回到池中被其他句柄复用，因此不能把它的视图交出去；
+         * 内存数据不超过阈值，复制的代价有限。映射在文件删除后仍然有效。
+         */
+        public ByteBuffer asByteBuffer() {
+            checkOpen();
+            if (isInMemory()) {
+                ByteBuffer source = resources.lease.buffer().duplicate();
+                source.position(0).limit((int) size);
+                ByteBuffer copy = ByteBuffer.allocate((int) size);
+                copy.put(source).flip();
+                return copy.asReadOnlyBuffer();
+            }
+            try {
+                return resources.channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map spool file", e);
+            }
+        }
+
+        /**
+         * 流直接读取底层缓冲区或文件，每次读取前检查句柄，关闭后读取抛出 IOException
+         */
+        public InputStream openStream() {
+            checkOpen();
+            if (isInMemory()) {
+                ByteBuffer view = resources.lease.buffer().duplicate();
+                view.position(0).limit((int) size);
+                return new BufferInputStream(this, view.slice());
+            }
+            return new ChannelInputStream(this, resources.channel, size);
+        }
+
+        private void checkReadable() throws IOException {
+            if (handle.isClosed()) {
+                throw new IOException("Spool already closed");
+            }
+        }
+
+        private void checkOpen() {
+            if (handle.isClosed()) {
+                throw new IllegalStateException("Spool already closed");
+            }
+        }
+
+        @Override
+        public void close() {
+            handle.close();
+        }
+    }
+
+    private static Path createOwnerOnlyFile(Path directory) throws IOException {
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return Files.createTempFile(directory, "spool", ".tmp",
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        Path file = Files.createTempFile(directory, "spool", ".tmp");
+        java.io.File asFile = file.toFile();
+        asFile.setReadable(false, false);
+        asFile.setWritable(false, false);
+        asFile.setReadable(true, true);
+        asFile.setWritable(true, true);
+        return file;
+    }
+
+    /** 持有 Spool 本身，流还在使用时句柄不会被 Cleaner 回收 */
+    private static final class BufferInputStream extends InputStream {
+        private final Spool spool;
+        private final ByteBuffer buffer;
+
+        BufferInputStream(Spool spool, ByteBuffer buffer) {
+            this.spool = spool;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            spool.checkReadable();
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            spool.checkReadable();
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /** 按自己的位置做定位读取，多个流之间互不影响 */
+    private static final class ChannelInputStream extends InputStream {
+        private final Spool spool;
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        ChannelInputStream(Spool spool, FileChannel channel, long end) {
+            this.spool = spool;
+            this.channel = channel;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            spool.checkReadable();
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            int count = (int) Math.min(len, end - position);
+            int read = channel.read(ByteBuffer.wrap(b, off, count), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+    }
+}
@@ -0,0 +1,739 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 堆外的用户记录存储
+ *
+ * 所有数据放在一块连续的堆外区域里：文件头、开放寻址的用户名索引、以及只追加的记录区。
+ * 每条记录是 [用户名长度][邮箱长度][用户名UTF-8][邮箱UTF-8]，没有对象头和 String 包装，
+ * 占用基本等于原始字节数。索引槽保存用户名哈希和记录偏移，查找时先比较哈希，
+ * 命中后再直接拿字符逐字节比较UTF-8编码，不需要先把参数转成 byte[]。
+ *
+ * 读取通过可复用的 {@link View} 完成，View 只记住记录位置，判断和追加到 StringBuilder
+ * 都直接读堆外字节；只有调用 getUsername/getEmail 时才创建 String。
+ *
+ * 用 {@link #open} 打开时区域映射到文件，重启后再次打开即可使用，无需重建索引。
+ * 文件头里有干净关闭标记：打开时清除、{@link #close} 刷盘后才写回。进程在写入中途退出时
+ * 标记缺失，下次打开会校验记录区并按记录重建索引，截掉最后一条不完整的记录。
+ * 索引扩容时记录区整体后移，搬移进度随每个分块写进文件头，中途退出后下次打开先把剩余部分搬完。
+ * 以上针对进程异常退出；掉电时未刷盘的页面写回顺序不确定，不做保证。
+ * 覆盖已有用户名会追加新记录，旧记录成为垃圾，见 {@link #garbageBytes()}；
+ * 之前取得的 View 仍指向旧记录，需要重新查找。
+ * 整个区域不超过2GB。写入互斥，读取共享。
+ */
+public class UserStore implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserStore.class);
+
+    private static final int MAGIC = 0x55535231;
+    private static final int VERSION = 1;
+
+    // 文件头：magic, version, 槽数, 用户数, 记录区长度, 垃圾字节数, 状态, 扩容目标槽数
+    private static final int HEADER_BYTES = 32;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_SLOTS = 8;
+    private static final int H_COUNT = 12;
+    private static final int H_DATA_END = 16;
+    private static final int H_GARBAGE = 20;
+    private static final int H_STATE = 24;
+    private static final int H_GROW_SLOTS = 28;
+
+    // 状态：只有干净关闭的文件才直接沿用索引；旧版本文件此处为0，按未干净关闭处理
+    private static final int STATE_CLEAN = 0x434C4E21;
+    private static final int STATE_OPEN = 1;
+    private static final int STATE_GROWING = 2;
+
+    // 索引槽：哈希 + (记录偏移 + 1)，偏移为0表示空槽
+    private static final int SLOT_BYTES = 8;
+    private static final int RECORD_HEADER = 8;
+    private static final double LOAD_FACTOR = 0.7;
+    private static final int MIN_SLOTS = 16;
+
+    private final FileChannel channel;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private ByteBuffer buffer;
+    private int slots;
+    private int count;
+    private int dataEnd;
+    private int garbage;
+    private boolean closed;
+    private boolean recovered;
+
+    private UserStore(FileChannel channel, ByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * 1. 只在内存中的存储，区域为直接缓冲区
+     *
+     * @param expectedUsers 预计用户数，决定初始索引大小
+     * @param expectedBytes 预计记录区字节数
+     */
+    public static UserStore inMemory(int expectedUsers, int expectedBytes) {
+        int slots = slotsFor(expectedUsers);
+        UserStore store = new UserStore(null, ByteBuffer.allocateDirect(initialSize(slots, expectedBytes)));
+        store.initialize(slots);
+        return store;
+    }
+
+    /**
+     * 2. 映射到文件的存储；文件已存在时直接沿用其中的数据和索引
+     */
+    public static UserStore open(Path file, int expectedUsers, int expectedBytes) {
+        FileChannel channel = null;
+        try {
+            boolean existing = Files.exists(file) && Files.size(file) > 0;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            UserStore store;
+            if (existing) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                store = new UserStore(channel, mapped);
+                store.load();
+            } else {
+                int slots = slotsFor(expectedUsers);
+                store = new UserStore(channel,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, initialSize(slots, expectedBytes)));
+                store.initialize(slots);
+            }
+            if (store.recovered) {
+                logger.warn("User store {} was not closed cleanly; rebuilt index for {} users", file, store.count);
+            }
+            // 先落盘“已打开”状态，之后任何时刻退出都会在下次打开时被发现
+            store.setState(STATE_OPEN);
+            return store;
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel, e);
+            if (e instanceof IOException) {
+                throw new UncheckedIOException("Failed to open user store " + file, (IOException) e);
+            }
+            throw (RuntimeException) e;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel, Exception failure) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    private static int slotsFor(int expectedUsers) {
+        int needed = (int) Math.min(1 << 30, (long) Math.ceil(Math.max(expectedUsers, 1) / LOAD_FACTOR));
+        return Math.max(MIN_SLOTS, Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    private static int initialSize(int slots, int expectedBytes) {
+        long size = (long) HEADER_BYTES + (long) slots * SLOT_BYTES + Math.max(expectedBytes, 1024);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("User store cannot exceed 2GB: " + size);
+        }
+        return (int) size;
+    }
+
+    private void initialize(int slotCount) {
+        slots = slotCount;
+        buffer.putInt(H_MAGIC, MAGIC);
+        buffer.putInt(H_VERSION, VERSION);
+        writeHeader();
+    }
+
+    private void load() {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(H_MAGIC) != MAGIC) {
+            throw new IllegalStateException("Not a user store file");
+        }
+        if (buffer.getInt(H_VERSION) != VERSION) {
+            throw new IllegalStateException("Unsupported user store version " + buffer.getInt(H_VERSION));
+        }
+        slots = buffer.getInt(H_SLOTS);
+        count = buffer.getInt(H_COUNT);
+        dataEnd = buffer.getInt(H_DATA_END);
+        garbage = buffer.getInt(H_GARBAGE);
+        if (Integer.bitCount(slots) != 1 || slots > 1 << 27 || count < 0 || count > slots || dataEnd < 0
+                || (long) dataStart() + dataEnd > buffer.capacity()) {
+            throw new IllegalStateException("Corrupted user store header");
+        }
+        int state = buffer.getInt(H_STATE);
+        if (state == STATE_GROWING) {
+            resumeGrowth();
+        }
+        if (state != STATE_CLEAN) {
+            dataEnd = validRecordsEnd();
+            rebuildIndex();
+            recovered = true;
+        }
+    }
+
+    /** 扩容中途退出：按文件头里的进度把剩余的记录搬完，索引随后重建 */
+    private void resumeGrowth() {
+        int target = buffer.getInt(H_GROW_SLOTS);
+        int remaining = buffer.getInt(H_GARBAGE);
+        int oldSlots = target >>> 1;
+        if (Integer.bitCount(target) != 1 || target < 2 || target > 1 << 27
+                || (slots != oldSlots && slots != target) || remaining < 0 || remaining > dataEnd
+                || (long) HEADER_BYTES + (long) target * SLOT_BYTES + dataEnd > buffer.capacity()) {
+            throw new IllegalStateException("Corrupted user store header");
+        }
+        int oldStart = HEADER_BYTES + oldSlots * SLOT_BYTES;
+        moveForward(oldStart, remaining, oldSlots * SLOT_BYTES);
+        slots = target;
+    }
+
+    /** 从头扫描记录区，返回最后一条完整记录的结尾 */
+    private int validRecordsEnd() {
+        int start = dataStart();
+        int record = 0;
+        while (record + RECORD_HEADER <= dataEnd) {
+            int usernameBytes = buffer.getInt(start + record);
+            int emailBytes = buffer.getInt(start + record + 4);
+            if (usernameBytes < 0 || emailBytes < -1) {
+                break;
+            }
+            long next = (long) record + RECORD_HEADER + usernameBytes + Math.max(emailBytes, 0);
+            if (next > dataEnd) {
+                break;
+            }
+            record = (int) next;
+        }
+        return record;
+    }
+
+    private void setState(int state) {
+        buffer.putInt(H_STATE, state);
+        if (buffer instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) buffer).force();
+        }
+    }
+
+    /** 上次是否没有干净关闭、打开时重建过索引 */
+    public boolean wasRecovered() {
+        return recovered;
+    }
+
+    private void writeHeader() {
+        buffer.putInt(H_SLOTS, slots);
+        buffer.putInt(H_COUNT, count);
+        buffer.putInt(H_DATA_END, dataEnd);
+        buffer.putInt(H_GARBAGE, garbage);
+    }
+
+    private int dataStart() {
+        return HEADER_BYTES + slots * SLOT_BYTES;
+    }
+
+    /**
+     * 3. 写入或覆盖一个用户，email 可以为 null
+     */
+    public void put(CharSequence username, CharSequence email) {
+        if (username == null) {
+            throw new IllegalArgumentException("username must not be null");
+        }
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            int hash = hash(username);
+            int slot = findSlot(hash, username);
+            int existing = slotRecord(slot);
+            if (existing < 0 && count + 1 > slots * LOAD_FACTOR) {
+                growIndex();
+                slot = findSlot(hash, username);
+            }
+            int usernameBytes = utf8Length(username);
+            int emailBytes = email == null ? -1 : utf8Length(email);
+            long recordBytes = (long) RECORD_HEADER + usernameBytes + Math.max(emailBytes, 0);
+            ensureCapacity(dataStart() + dataEnd + recordBytes);
+
+            int record = dataEnd;
+            int position = dataStart() + record;
+            buffer.putInt(position, usernameBytes);
+            buffer.putInt(position + 4, emailBytes);
+            position = encode(username, position + RECORD_HEADER);
+            if (email != null) {
+                encode(email, position);
+            }
+            dataEnd += (int) recordBytes;
+            if (existing >= 0) {
+                garbage += recordSize(existing);
+            } else {
+                count++;
+            }
+            setSlot(slot, hash, record);
+            writeHeader();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 4. 查找用户，找到时把 view 指向该记录并返回 true
+     */
+    public boolean find(CharSequence username, View view) {
+        if (view.store != this) {
+            throw new IllegalArgumentException("View belongs to another store");
+        }
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int record = slotRecord(findSlot(hash(username), username));
+            view.record = record;
+            return record >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public View newView() {
+        return new View(this);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 记录区已使用的字节数 */
+    public long dataBytes() {
+        lock.readLock().lock();
+        try {
+            return dataEnd;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 被覆盖的旧记录占用的字节数 */
+    public long garbageBytes() {
+        lock.readLock().lock();
+        try {
+            return garbage;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 5. 用户记录的享元视图：可以当作 User 使用，也可以复用于多次查找
+     */
+    public static final class View extends SecurityIssuesDemo.User {
+        private final UserStore store;
+        private int record = -1;
+
+        private View(UserStore store) {
+            super(null, null);
+            this.store = store;
+        }
+
+        public boolean isPresent() {
+            return record >= 0;
+        }
+
+        public int usernameLength() {
+            return store.readInt(checkRecord(), 0);
+        }
+
+        /** 邮箱为 null 时返回 -1 */
+        public int emailLength() {
+            return store.readInt(checkRecord(), 4);
+        }
+
+        public boolean usernameEquals(CharSequence value) {
+            return store.fieldEquals(checkRecord(), false, value);
+        }
+
+        public boolean emailEquals(CharSequence value) {
+            return store.fieldEquals(checkRecord(), true, value);
+        }
+
+        public StringBuilder appendUsername(StringBuilder out) {
+            return store.appendField(checkRecord(), false, out);
+        }
+
+        /** 邮箱为 null 时不追加任何内容 */
+        public StringBuilder appendEmail(StringBuilder out) {
+            return store.appendField(checkRecord(), true, out);
+        }
+
+        @Override
+        public String getUsername() {
+            return appendUsername(new StringBuilder(usernameLength())).toString();
+        }
+
+        @Override
+        public String getEmail() {
+            int length = emailLength();
+            return length < 0 ? null : appendEmail(new StringBuilder(length)).toString();
+        }
+
+        private int checkRecord() {
+            if (record < 0) {
+                throw new IllegalStateException("View does not point at a user");
+            }
+            return record;
+        }
+    }
+
+    private int readInt(int record, int offset) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return buffer.getInt(dataStart() + record + offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean fieldEquals(int record, boolean email, CharSequence value) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int position = dataStart() + record;
+            int usernameBytes = buffer.getInt(position);
+            int length = email ? buffer.getInt(position + 4) : usernameBytes;
+            if (length < 0 || value == null) {
+                return length < 0 && value == null;
+            }
+            int start = position + RECORD_HEADER + (email ? usernameBytes : 0);
+            return bytesEqual(start, length, value);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private StringBuilder appendField(int record, boolean email, StringBuilder out) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int position = dataStart() + record;
+            int usernameBytes = buffer.getInt(position);
+            int length = email ? buffer.getInt(position + 4) : usernameBytes;
+            if (length > 0) {
+                decode(position + RECORD_HEADER + (email ? usernameBytes : 0), length, out);
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int recordSize(int record) {
+        int position = dataStart() + record;
+        return RECORD_HEADER + buffer.getInt(position) + Math.max(buffer.getInt(position + 4), 0);
+    }
+
+    // ---- 索引 ----
+
+    /** 返回匹配或第一个空的槽位 */
+    private int findSlot(int hash, CharSequence username) {
+        int mask = slots - 1;
+        int start = dataStart();
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int base = HEADER_BYTES + slot * SLOT_BYTES;
+            int stored = buffer.getInt(base + 4);
+            if (stored == 0) {
+                return slot;
+            }
+            if (buffer.getInt(base) == hash) {
+                int position = start + stored - 1;
+                if (bytesEqual(position + RECORD_HEADER, buffer.getInt(position), username)) {
+                    return slot;
+                }
+            }
+        }
+    }
+
+    private int slotRecord(int slot) {
+        return buffer.getInt(HEADER_BYTES + slot * SLOT_BYTES + 4) - 1;
+    }
+
+    private void setSlot(int slot, int hash, int record) {
+        int base = HEADER_BYTES + slot * SLOT_BYTES;
+        buffer.putInt(base, hash);
+        buffer.putInt(base + 4, record + 1);
+    }
+
+    /**
+     * 索引扩容：记录区整体后移，再按记录顺序重建索引
+     */
+    private void growIndex() {
+        if (slots >= 1 << 27) {
+            throw new IllegalStateException("User store index is full");
+        }
+        int oldStart = dataStart();
+        int newSlots = slots * 2;
+        int newStart = HEADER_BYTES + newSlots * SLOT_BYTES;
+        ensureCapacity((long) newStart + dataEnd);
+        if (channel != null) {
+            buffer.putInt(H_GROW_SLOTS, newSlots);
+            buffer.putInt(H_GARBAGE, dataEnd);
+            setState(STATE_GROWING);
+        }
+        moveForward(oldStart, dataEnd, newStart - oldStart);
+
+        // 记录已全部就位；切回打开状态之后退出，恢复时按新槽数重建索引即可
+        buffer.putInt(H_SLOTS, newSlots);
+        if (channel != null) {
+            setState(STATE_OPEN);
+        }
+        slots = newSlots;
+        rebuildIndex();
+    }
+
+    /**
+     * 清空索引后按记录顺序重新插入，后写入的记录覆盖同名的旧记录；同时重算用户数和垃圾字节数
+     */
+    private void rebuildIndex() {
+        int start = dataStart();
+        for (int position = HEADER_BYTES; position < start; position += SLOT_BYTES) {
+            buffer.putLong(position, 0L);
+        }
+        count = 0;
+        garbage = 0;
+        int mask = slots - 1;
+        for (int record = 0; record < dataEnd; record += recordSize(record)) {
+            int position = start + record;
+            int length = buffer.getInt(position);
+            int hash = hashBytes(position + RECORD_HEADER, length);
+            int slot = hash & mask;
+            while (true) {
+                int stored = slotRecord(slot);
+                if (stored < 0) {
+                    count++;
+                    break;
+                }
+                if (buffer.getInt(HEADER_BYTES + slot * SLOT_BYTES) == hash && sameUsername(stored, record)) {
+                    garbage += recordSize(stored);
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            setSlot(slot, hash, record);
+        }
+        writeHeader();
+    }
+
+    private boolean sameUsername(int first, int second) {
+        int a = dataStart() + first;
+        int b = dataStart() + second;
+        int length = buffer.getInt(a);
+        if (length != buffer.getInt(b)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(a + RECORD_HEADER + i) != buffer.get(b + RECORD_HEADER + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 从尾部开始分块复制，源和目标区域重叠也不会互相覆盖。
+     * 每块完成后把还没搬移的字节数写进文件头的垃圾字节数字段（扩容期间该字段没有意义，
+     * 之后重建索引时重算）；分块不超过移动距离，复制到一半退出后整块重做也不会读到已被覆盖的源数据
+     */
+    private void moveForward(int from, int length, int distance) {
+        byte[] chunk = new byte[Math.min(64 * 1024, distance)];
+        for (int end = length; end > 0; ) {
+            int n = Math.min(chunk.length, end);
+            ByteBuffer source = buffer.duplicate();
+            source.position(from + end - n);
+            source.get(chunk, 0, n);
+            ByteBuffer target = buffer.duplicate();
+            target.position(from + end - n + distance);
+            target.put(chunk, 0, n);
+            end -= n;
+            buffer.putInt(H_GARBAGE, end);
+        }
+    }
+
+    private void ensureCapacity(long needed) {
+        if (needed <= buffer.capacity()) {
+            return;
+        }
+        if (needed > Integer.MAX_VALUE) {
+            throw new IllegalStateException("User store cannot exceed 2GB");
+        }
+        int capacity = (int) Math.max(needed, Math.min((long) buffer.capacity() * 2, Integer.MAX_VALUE));
+        if (channel != null) {
+            try {
+                // 新映射覆盖整个文件，原有内容不需要复制
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to grow user store", e);
+            }
+        } else {
+            ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+            ByteBuffer source = buffer.duplicate();
+            source.clear();
+            grown.put(source);
+            buffer = grown;
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("User store already closed");
+        }
+    }
+
+    /**
+     * 6. 把映射区域刷到磁盘；文件仍处于打开状态，只有 close() 会写回干净关闭标记
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            if (buffer instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) buffer).force();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (buffer instanceof MappedByteBuffer) {
+                // 数据和索引先落盘，再写干净关闭标记
+                ((MappedByteBuffer) buffer).force();
+                setState(STATE_CLEAN);
+            }
+            closed = true;
+            buffer = null;
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close user store", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---- UTF-8：直接在字符和堆外字节之间编码、比较，不经过中间 byte[] ----
+
+    /** 下一个码点；孤立的代理字符按 String.getBytes 的方式替换为 '?' */
+    private static int codePointAt(CharSequence text, int index) {
+        char c = text.charAt(index);
+        if (Character.isHighSurrogate(c) && index + 1 < text.length()
+                && Character.isLowSurrogate(text.charAt(index + 1))) {
+            return Character.toCodePoint(c, text.charAt(index + 1));
+        }
+        return Character.isSurrogate(c) ? '?' : c;
+    }
+
+    private static int encodedLength(int codePoint) {
+        return codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+    }
+
+    private static int encodedByte(int codePoint, int length, int index) {
+        if (length == 1) {
+            return codePoint;
+        }
+        if (index == 0) {
+            return ((0xF00 >> length) & 0xFF) | (codePoint >> (6 * (length - 1)));
+        }
+        return 0x80 | ((codePoint >> (6 * (length - 1 - index))) & 0x3F);
+    }
+
+    static int utf8Length(CharSequence text) {
+        int total = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = codePointAt(text, i);
+            total += encodedLength(codePoint);
+            i += codePoint >= 0x10000 ? 2 : 1;
+        }
+        return total;
+    }
+
+    private int encode(CharSequence text, int position) {
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = codePointAt(text, i);
+            int length = encodedLength(codePoint);
+            for (int k = 0; k < length; k++) {
+                buffer.put(position++, (byte) encodedByte(codePoint, length, k));
+            }
+            i += codePoint >= 0x10000 ? 2 : 1;
+        }
+        return position;
+    }
+
+    private boolean bytesEqual(int position, int length, CharSequence text) {
+        int end = position + length;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = codePointAt(text, i);
+            int encoded = encodedLength(codePoint);
+            if (position + encoded > end) {
+                return false;
+            }
+            for (int k = 0; k < encoded; k++) {
+                if (buffer.get(position++) != (byte) encodedByte(codePoint, encoded, k)) {
+                    return false;
+                }
+            }
+            i += codePoint >= 0x10000 ? 2 : 1;
+        }
+        return position == end;
+    }
+
+    private void decode(int position, int length, StringBuilder out) {
+        int end = position + length;
+        while (position < end) {
+            int lead = buffer.get(position) & 0xFF;
+            int size = lead < 0x80 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+            int codePoint = size == 1 ? lead : lead & (0x7F >> size);
+            for (int k = 1; k < size && position + k < end; k++) {
+                codePoint = (codePoint << 6) | (buffer.get(position + k) & 0x3F);
+            }
+            out.appendCodePoint(codePoint);
+            position += size;
+        }
+    }
+
+    static int hash(CharSequence text) {
+        int hash = ByteHash.SEED;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = codePointAt(text, i);
+            int length = encodedLength(codePoint);
+            for (int k = 0; k < length; k++) {
+                hash = ByteHash.update(hash, encodedByte(codePoint, length, k));
+            }
+            i += codePoint >= 0x10000 ? 2 : 1;
+        }
+        return ByteHash.finish(hash);
+    }
+
+    private int hashBytes(int position, int length) {
+        int hash = ByteHash.SEED;
+        for (int i = 0; i < length; i++) {
+            hash = ByteHash.update(hash, buffer.get(position + i));
+        }
+        return ByteHash.finish(hash);
+    }
+}
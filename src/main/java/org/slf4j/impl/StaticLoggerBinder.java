@@ -0,0 +1,35 @@
+package org.slf4j.impl;
+
+import com.example.demo.AsyncLoggerFactory;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.spi.LoggerFactoryBinder;
+
+/**
+ * slf4j 1.7 绑定入口，让 LoggerFactory.getLogger 返回异步环形缓冲区Logger
+ */
+public class StaticLoggerBinder implements LoggerFactoryBinder {
+
+    private static final StaticLoggerBinder SINGLETON = new StaticLoggerBinder();
+
+    // slf4j在绑定时读取该字段做版本兼容检查，不能声明为final以免被内联
+    public static String REQUESTED_API_VERSION = "1.6.99";
+
+    private final ILoggerFactory loggerFactory = new AsyncLoggerFactory();
+
+    private StaticLoggerBinder() {
+    }
+
+    public static StaticLoggerBinder getSingleton() {
+        return SINGLETON;
+    }
+
+    @Override
+    public ILoggerFactory getLoggerFactory() {
+        return loggerFactory;
+    }
+
+    @Override
+    public String getLoggerFactoryClassStr() {
+        return AsyncLoggerFactory.class.getName();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.demo;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+
+public class AsyncLogBackendTest {
+
+    @Test
+    public void formatsParametersOnWriterSideInOrder() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        AsyncLogBackend backend = new AsyncLogBackend(16, 4, AsyncLogBackend.OverflowPolicy.DROP,
+            new PrintStream(out, true), new PrintStream(err, true));
+        AsyncLogger logger = new AsyncLogger("test", backend, AsyncLogBackend.Level.INFO);
+
+        logger.debug("hidden {}", 0);
+        logger.info("first {}", 1);
+        logger.info("second {} {}", 2, "x");
+        logger.error("failed {}", "op", new IllegalStateException("boom"));
+
+        while (backend.drainBatch() > 0) {
+            // 在测试线程中同步排空
+        }
+
+        String stdout = out.toString();
+        assertFalse(stdout.contains("hidden"));
+        assertTrue(stdout.indexOf("first 1") < stdout.indexOf("second 2 x"));
+        assertTrue(err.toString().contains("failed op"));
+        assertTrue(err.toString().contains("IllegalStateException: boom"));
+        assertEquals(3, backend.getWrittenCount());
+    }
+
+    @Test
+    public void dropPolicyCountsOverflow() {
+        AsyncLogBackend backend = new AsyncLogBackend(4, 4, AsyncLogBackend.OverflowPolicy.DROP,
+            new PrintStream(new ByteArrayOutputStream()), new PrintStream(new ByteArrayOutputStream()));
+
+        for (int i = 0; i < 6; i++) {
+            backend.publish(AsyncLogBackend.Level.INFO, "test", "msg {}", new Object[] {i}, null);
+        }
+
+        assertEquals(2, backend.getDroppedCount());
+        assertEquals(4, backend.drainBatch());
+        assertTrue(backend.publish(AsyncLogBackend.Level.INFO, "test", "again", null, null));
+    }
+
+    @Test
+    public void closeFlushesPendingEvents() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogBackend backend = new AsyncLogBackend(1024, 64, AsyncLogBackend.OverflowPolicy.BLOCK,
+            new PrintStream(out, true), new PrintStream(new ByteArrayOutputStream()));
+        backend.start();
+
+        for (int i = 0; i < 5000; i++) {
+            backend.publish(AsyncLogBackend.Level.INFO, "test", "line {}", new Object[] {i}, null);
+        }
+        backend.close();
+
+        assertEquals(5000, backend.getWrittenCount());
+        assertEquals(0, backend.getDroppedCount());
+        assertTrue(out.toString().contains("line 4999"));
+    }
+
+    @Test
+    public void eventsAfterCloseAreWrittenSynchronously() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogBackend backend = new AsyncLogBackend(4, 4, AsyncLogBackend.OverflowPolicy.DROP,
+            new PrintStream(out, true), new PrintStream(new ByteArrayOutputStream()));
+        backend.start();
+        backend.close();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(backend.publish(AsyncLogBackend.Level.INFO, "test", "late {}", new Object[] {i}, null));
+        }
+
+        assertEquals(10, backend.getWrittenCount());
+        assertEquals(0, backend.getDroppedCount());
+        assertTrue(out.toString().contains("late 9"));
+    }
+
+    @Test
+    public void blockedPublishersParkUntilWriterCatchesUp() throws InterruptedException {
+        AsyncLogBackend backend = new AsyncLogBackend(2, 1, AsyncLogBackend.OverflowPolicy.BLOCK,
+            new PrintStream(new ByteArrayOutputStream()), new PrintStream(new ByteArrayOutputStream()));
+        backend.start();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    backend.publish(AsyncLogBackend.Level.INFO, "test", "msg {}", new Object[] {i}, null);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        backend.close();
+
+        assertEquals(8000, backend.getWrittenCount());
+        assertEquals(0, backend.getDroppedCount());
+    }
+}
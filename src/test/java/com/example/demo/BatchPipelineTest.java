@@ -0,0 +1,95 @@
+package com.example.demo;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class BatchPipelineTest {
+
+    private static final ExecutorService POOL = BatchPipeline.newBoundedPool("pipeline-test", 4, 8);
+
+    @AfterClass
+    public static void shutdownPool() {
+        POOL.shutdownNow();
+    }
+
+    private static List<Integer> numbers(int count) {
+        return IntStream.range(0, count).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    public void fusedStagesRunInBatches() {
+        List<Integer> batchSizes = new ArrayList<>();
+        List<String> out = new ArrayList<>();
+
+        long total = BatchPipeline.from(Arrays.asList(1, null, 2, 3, null, 4, 5))
+            .batchSize(3)
+            .filter(i -> i != null)
+            .map(i -> i * 10)
+            .filter(i -> i != 30)
+            .map(i -> "v" + i)
+            .to(batch -> {
+                batchSizes.add(batch.size());
+                out.addAll(batch);
+            });
+
+        assertEquals(4, total);
+        assertEquals(Arrays.asList("v10", "v20", "v40", "v50"), out);
+        assertEquals(Arrays.asList(2, 1, 1), batchSizes);
+    }
+
+    @Test
+    public void parallelOrderedKeepsSourceOrder() {
+        List<Integer> out = new ArrayList<>();
+        BatchPipeline.from(numbers(100_000))
+            .batchSize(500)
+            .filter(i -> i % 2 == 0)
+            .map(i -> i / 2)
+            .parallel(POOL, 4, true)
+            .to(out::addAll);
+
+        assertEquals(numbers(50_000), out);
+    }
+
+    @Test
+    public void parallelUnorderedDeliversEverything() {
+        List<Integer> out = new ArrayList<>();
+        long total = BatchPipeline.from(numbers(20_000))
+            .batchSize(256)
+            .parallel(POOL, 3, false)
+            .to(out::addAll);
+
+        Collections.sort(out);
+        assertEquals(20_000, total);
+        assertEquals(numbers(20_000), out);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stageFailuresPropagate() {
+        BatchPipeline.from(numbers(10))
+            .map(i -> {
+                if (i == 7) {
+                    throw new IllegalArgumentException("bad item");
+                }
+                return i;
+            })
+            .parallel(POOL, 2, true)
+            .to(batch -> { });
+    }
+
+    @Test
+    public void duplicatedCodeHelperSkipsNulls() {
+        List<String> out = new ArrayList<>();
+        assertEquals(2, CodeIssuesDemo.printUpperCase(Arrays.asList("a", null, "b"), out::addAll));
+        assertEquals(Arrays.asList("Processing: A", "Processing: B"), out);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.demo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class BulkMutationsTest {
+
+    @Test
+    public void compactsArrayInOnePass() {
+        String[] items = {"a", "x", "b", "x", "c"};
+        int size = BulkMutations.removeIf(items, items.length, "x"::equals);
+
+        assertEquals(3, size);
+        assertArrayEquals(new String[] {"a", "b", "c", null, null}, items);
+    }
+
+    @Test
+    public void sequentialAndParallelRemovalAgree() {
+        List<Integer> sequential = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            sequential.add(i);
+        }
+        List<Integer> parallel = new ArrayList<>(sequential);
+        List<Integer> expected = new ArrayList<>(sequential);
+        expected.removeIf(i -> i % 3 == 0);
+
+        assertEquals(66_667, BulkMutations.removeIf(sequential, i -> i % 3 == 0, Integer.MAX_VALUE));
+        assertEquals(66_667, BulkMutations.removeIf(parallel, i -> i % 3 == 0, 1));
+        assertEquals(expected, sequential);
+        assertEquals(expected, parallel);
+    }
+
+    @Test
+    public void failingPredicateLeavesListUntouched() {
+        List<String> list = new ArrayList<>(Arrays.asList("a", "b", null, "c"));
+        try {
+            BulkMutations.removeIf(list, s -> s.equals("a"));
+            fail("predicate should have thrown");
+        } catch (NullPointerException expected) {
+            assertEquals(Arrays.asList("a", "b", null, "c"), list);
+        }
+    }
+
+    @Test
+    public void fixedSizeListIsRestoredWhenRemovalIsUnsupported() {
+        List<String> list = Arrays.asList("x", "a", "x", "b", "c", "x");
+        try {
+            BulkMutations.removeIf(list, "x"::equals);
+            fail("fixed-size list should reject removal");
+        } catch (UnsupportedOperationException expected) {
+            assertEquals(Arrays.asList("x", "a", "x", "b", "c", "x"), list);
+        }
+    }
+
+    @Test
+    public void handlesLinkedAndSharedLists() {
+        List<String> linked = new LinkedList<>(Arrays.asList("a", "b", "a"));
+        List<String> synced = Collections.synchronizedList(new ArrayList<>(Arrays.asList("a", "b", "a")));
+        List<String> cow = new CopyOnWriteArrayList<>(Arrays.asList("a", "b", "a"));
+
+        assertEquals(2, BulkMutations.removeIf(linked, "a"::equals));
+        assertEquals(2, BulkMutations.removeIfShared(synced, "a"::equals));
+        assertEquals(2, BulkMutations.removeIfShared(cow, "a"::equals));
+        assertEquals(Collections.singletonList("b"), linked);
+        assertEquals(Collections.singletonList("b"), synced);
+        assertEquals(Collections.singletonList("b"), cow);
+    }
+
+    @Test
+    public void demoNoLongerThrows() {
+        assertEquals(Arrays.asList("item1", "item3"), new AdvancedIssuesDemo().concurrentModificationIssue());
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.demo;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class BulkUserValidatorTest {
+
+    private static final Pattern EMAIL = Pattern.compile("^[A-Za-z0-9+_.-]+@(.+)$");
+
+    private final BulkUserValidator validator = new BulkUserValidator(1, 150);
+
+    @Test
+    public void emailScannerMatchesRegex() {
+        String[] samples = {"a@b", "user.name+tag@example.com", "@example.com", "user@", "us er@x.com",
+            "user@@x", "user", "a@", "x_y-z@host", "bad<script>@x", "ü@x.com",
+            "a@\n", "a@b\n", "a@b\r\nBcc:x", "a@b\u0085", "a@b\u2028c", "a@\u2029"};
+        for (String sample : samples) {
+            assertEquals(sample, EMAIL.matcher(sample).matches(), BulkUserValidator.isValidEmail(sample));
+        }
+    }
+
+    @Test
+    public void columnarValidationSetsBitsAndCodes() {
+        String[] emails = {"ok@x.com", null, "bad", "old@x.com", "young@x.com"};
+        int[] ages = {30, 20, 20, 151, 0};
+
+        BulkUserValidator.Result result = validator.validate(emails, ages, emails.length);
+
+        assertTrue(result.isValid(0));
+        assertEquals(BulkUserValidator.MISSING_EMAIL, result.errorCode(1));
+        assertEquals(BulkUserValidator.INVALID_EMAIL, result.errorCode(2));
+        assertEquals(BulkUserValidator.AGE_OUT_OF_RANGE, result.errorCode(3));
+        assertEquals(BulkUserValidator.AGE_OUT_OF_RANGE, result.errorCode(4));
+        assertEquals(1, result.validCount());
+        assertEquals(1, result.toBitSet().cardinality());
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        int count = 100_003;
+        String[] emails = new String[count];
+        int[] ages = new int[count];
+        for (int i = 0; i < count; i++) {
+            emails[i] = i % 7 == 0 ? "broken" : "user" + i + "@example.com";
+            ages[i] = i % 200;
+        }
+
+        BulkUserValidator.Result sequential = validator.validate(emails, ages, count, Integer.MAX_VALUE);
+        BulkUserValidator.Result parallel = validator.validate(emails, ages, count, 1);
+
+        assertEquals(sequential.toBitSet(), parallel.toBitSet());
+        for (int i = 0; i < count; i++) {
+            assertEquals(sequential.errorCode(i), parallel.errorCode(i));
+        }
+    }
+
+    @Test
+    public void rendersEscapedHtmlForValidRowsOnly() {
+        String[] emails = {"a@x'y.com", "nope", "c@<x>&\"y\""};
+        BulkUserValidator.Result result = validator.validate(emails, new int[] {10, 10, 10}, 3);
+
+        String html = BulkUserValidator.renderValid(emails, result, new StringBuilder()).toString();
+
+        assertEquals("<div>User input: a@x&#39;y.com</div>\n"
+            + "<div>User input: c@&lt;x&gt;&amp;&quot;y&quot;</div>\n", html);
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.demo;
+
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class CacheSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // 演示缓存的快照只能启用一次，整个测试类共用
+    @ClassRule
+    public static TemporaryFolder warmFolder = new TemporaryFolder();
+    private static boolean warmEnabled;
+
+    private Path file() {
+        return folder.getRoot().toPath().resolve("cache.snapshot");
+    }
+
+    @Test
+    public void roundTripsSupportedValueTypes() throws IOException {
+        Map<String, Object> live = new ConcurrentHashMap<>();
+        live.put("string", "值 value");
+        live.put("long", 1L << 40);
+        live.put("int", 42);
+        live.put("double", 2.5);
+        live.put("boolean", true);
+        live.put("bytes", new byte[] {1, 2, 3});
+        live.put("unsupported", new Object());
+
+        CacheSnapshot.WriteResult result = CacheSnapshot.write(live, null, file());
+        assertEquals(6, result.entries);
+        assertEquals(1, result.skipped);
+        assertTrue(result.bytes > 0);
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            assertEquals(1, files.count());
+        }
+
+        CacheSnapshot snapshot = CacheSnapshot.open(file());
+        assertEquals(6, snapshot.size());
+        assertEquals("值 value", snapshot.get("string"));
+        assertEquals(1L << 40, snapshot.get("long"));
+        assertEquals(42, snapshot.get("int"));
+        assertEquals(2.5, snapshot.get("double"));
+        assertEquals(true, snapshot.get("boolean"));
+        assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) snapshot.get("bytes"));
+        assertNull(snapshot.get("unsupported"));
+        assertNull(snapshot.get("missing"));
+
+        assertEquals(8, snapshot.lookups());
+        assertEquals(6, snapshot.hits());
+        assertEquals(6.0 / 8, snapshot.hitRate(), 1e-9);
+    }
+
+    @Test
+    public void carriesOverEntriesNotYetLoaded() {
+        Map<String, Object> first = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            first.put("key" + i, "old" + i);
+        }
+        CacheSnapshot.write(first, null, file());
+        CacheSnapshot previous = CacheSnapshot.open(file());
+
+        Map<String, Object> live = new HashMap<>();
+        live.put("key1", "new1");
+        live.put("fresh", 7);
+        CacheSnapshot.WriteResult result = CacheSnapshot.write(live, previous, file());
+
+        assertEquals(4999, result.carriedOver);
+        assertEquals(5001, result.entries);
+        CacheSnapshot reloaded = CacheSnapshot.open(file());
+        assertEquals("new1", reloaded.get("key1"));
+        assertEquals("old4999", reloaded.get("key4999"));
+        assertEquals(7, reloaded.get("fresh"));
+        // 旧映射在文件被替换后仍然可读
+        assertEquals("old2", previous.get("key2"));
+    }
+
+    @Test
+    public void corruptedEntryIsDetectedOnRead() throws IOException {
+        Map<String, Object> live = new HashMap<>();
+        live.put("a", "first");
+        live.put("b", "second");
+        CacheSnapshot.write(live, null, file());
+
+        byte[] content = Files.readAllBytes(file());
+        int at = indexOf(content, "first".getBytes());
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'x'}), at);
+        }
+
+        CacheSnapshot snapshot = CacheSnapshot.open(file());
+        assertNull(snapshot.get("a"));
+        assertEquals(1, snapshot.corrupted());
+        assertEquals("second", snapshot.get("b"));
+    }
+
+    @Test
+    public void corruptedHeaderIsRejected() throws IOException {
+        CacheSnapshot.write(new HashMap<String, Object>(), null, file());
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {9}), 8);
+        }
+        try {
+            CacheSnapshot.open(file());
+            fail("header checksum must be verified");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage().contains("checksum"));
+        }
+    }
+
+    @Test
+    public void demoCacheWritesSnapshot() {
+        new PerformanceIssuesDemo().potentialMemoryLeak("snapshot-test-key", "snapshot-value");
+        CacheSnapshot.WriteResult result = PerformanceIssuesDemo.writeSnapshot(file());
+
+        assertNotNull(result);
+        assertEquals("snapshot-value", CacheSnapshot.open(file()).get("snapshot-test-key"));
+        assertTrue(MetricsRegistry.getDefault().timer("cache.performance.snapshot").getCount() > 0);
+    }
+
+    @Test
+    public void removedKeysAreNotCarriedOver() {
+        Map<String, Object> first = new HashMap<>();
+        first.put("kept", "a");
+        first.put("gone", "b");
+        CacheSnapshot.write(first, null, file());
+        CacheSnapshot previous = CacheSnapshot.open(file());
+
+        CacheSnapshot.WriteResult result = CacheSnapshot.write(new HashMap<String, Object>(),
+            Collections.singleton("gone"), previous, file());
+
+        assertEquals(1, result.carriedOver);
+        CacheSnapshot reloaded = CacheSnapshot.open(file());
+        assertEquals("a", reloaded.get("kept"));
+        assertNull(reloaded.get("gone"));
+    }
+
+    @Test
+    public void demoCacheLazyLoadsFromWarmSnapshot() throws IOException {
+        enableWarmSnapshot();
+        PerformanceIssuesDemo demo = new PerformanceIssuesDemo();
+
+        assertEquals("warm-value-0", demo.getCached("warm-0"));
+        assertTrue(PerformanceIssuesDemo.warmHitRate() > 0);
+        assertNull(demo.getCached("never-cached"));
+        // 加载后进入缓存，第二次不再访问快照
+        assertEquals("warm-value-0", demo.getCached("warm-0"));
+    }
+
+    @Test
+    public void demoCacheRemovalIsNotUndoneBySnapshot() throws IOException {
+        enableWarmSnapshot();
+        PerformanceIssuesDemo demo = new PerformanceIssuesDemo();
+
+        assertEquals("warm-value-1", demo.getCached("warm-1"));
+        demo.potentialMemoryLeak("warm-1", null);
+        assertNull(demo.getCached("warm-1"));
+        // 没有加载过的键同样可以删除
+        demo.potentialMemoryLeak("warm-2", null);
+        assertNull(demo.getCached("warm-2"));
+
+        demo.potentialMemoryLeak("warm-2", "rewritten");
+        assertEquals("rewritten", demo.getCached("warm-2"));
+    }
+
+    @Test
+    public void demoCacheRemovalIsNotWrittenToSnapshot() throws IOException {
+        enableWarmSnapshot();
+        PerformanceIssuesDemo demo = new PerformanceIssuesDemo();
+        demo.potentialMemoryLeak("warm-3", null);
+        assertTrue(PerformanceIssuesDemo.tombstoneCount() > 0);
+
+        assertNotNull(PerformanceIssuesDemo.writeSnapshot(file()));
+        CacheSnapshot written = CacheSnapshot.open(file());
+        assertNull(written.get("warm-3"));
+        assertEquals("warm-value-4", written.get("warm-4"));
+        // 新快照已不含被删除的键，墓碑随之清除，懒加载改从新快照读取
+        assertEquals(0, PerformanceIssuesDemo.tombstoneCount());
+        assertNull(demo.getCached("warm-3"));
+        assertEquals("warm-value-5", demo.getCached("warm-5"));
+    }
+
+    @Test
+    public void demoCacheOnlyTombstonesKeysInSnapshot() throws IOException {
+        enableWarmSnapshot();
+        PerformanceIssuesDemo demo = new PerformanceIssuesDemo();
+        int before = PerformanceIssuesDemo.tombstoneCount();
+
+        demo.potentialMemoryLeak("not-in-snapshot", "value");
+        demo.potentialMemoryLeak("not-in-snapshot", null);
+
+        assertEquals(before, PerformanceIssuesDemo.tombstoneCount());
+        assertNull(demo.getCached("not-in-snapshot"));
+    }
+
+    @Test
+    public void demoCacheCountsRemovalsSeparately() {
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        PerformanceIssuesDemo demo = new PerformanceIssuesDemo();
+        demo.potentialMemoryLeak("counted-key", "value");
+        long puts = metrics.counter("cache.performance.puts").getCount();
+        long removes = metrics.counter("cache.performance.removes").getCount();
+
+        demo.potentialMemoryLeak("counted-key", null);
+
+        assertEquals(puts, metrics.counter("cache.performance.puts").getCount());
+        assertEquals(removes + 1, metrics.counter("cache.performance.removes").getCount());
+    }
+
+    @Test
+    public void demoCacheSnapshotsCanOnlyBeEnabledOnce() throws IOException {
+        enableWarmSnapshot();
+        try {
+            PerformanceIssuesDemo.enableSnapshots(file(), 1, TimeUnit.HOURS);
+            fail("second enable must be rejected");
+        } catch (IllegalStateException expected) {
+            // 预期异常
+        }
+    }
+
+    private static synchronized void enableWarmSnapshot() throws IOException {
+        if (warmEnabled) {
+            return;
+        }
+        Map<String, Object> warm = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            warm.put("warm-" + i, "warm-value-" + i);
+        }
+        Path file = warmFolder.newFile("warm.snapshot").toPath();
+        CacheSnapshot.write(warm, null, file);
+        PerformanceIssuesDemo.enableSnapshots(file, 1, TimeUnit.HOURS).cancel(false);
+        warmEnabled = true;
+    }
+
+    private static int indexOf(byte[] content, byte[] needle) {
+        outer:
+        for (int i = 0; i + needle.length <= content.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (content[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        throw new AssertionError("not found");
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.demo;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DecisionTableTest {
+
+    private static final class Message {
+        final int type;
+        final String data;
+
+        Message(int type, String data) {
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    private static DecisionTable<Message, String> routes(boolean exclusive, AtomicInteger prefixChecks) {
+        DecisionTable.Check<Message> sharedPrefix = DecisionTable.Check.of("data startsWith pre", 2, m -> {
+            prefixChecks.incrementAndGet();
+            return m.data != null && m.data.startsWith("pre");
+        });
+        return new DecisionTable<>(m -> m.type, Arrays.asList(
+            new DecisionTable.Rule<>("pre-post", 1, "A", sharedPrefix,
+                DecisionTable.Check.endsWith("data", m -> m.data, "post")),
+            new DecisionTable.Rule<>("pre-only", 1, "B", sharedPrefix),
+            new DecisionTable.Rule<>("fallback", null, "C")),
+            exclusive, 0);
+    }
+
+    @Test
+    public void firstMatchingRuleWinsAndChecksAreShared() {
+        AtomicInteger prefixChecks = new AtomicInteger();
+        DecisionTable<Message, String> table = routes(false, prefixChecks);
+
+        assertEquals("A", table.match(new Message(1, "pre-x-post")));
+        assertEquals("B", table.match(new Message(1, "pre-x")));
+        assertEquals("C", table.match(new Message(1, "other")));
+        assertEquals("C", table.match(new Message(7, "pre-x-post")));
+        assertNull(new DecisionTable<Message, String>(m -> m.type,
+            Arrays.asList(new DecisionTable.Rule<>("only", 1, "A")), false, 0).match(new Message(2, "")));
+
+        // 三次 type=1 的匹配各自只对共享前缀条件求值一次
+        assertEquals(3, prefixChecks.get());
+        assertEquals(Long.valueOf(1), table.hitCounts().get("pre-post"));
+        assertEquals(Long.valueOf(2), table.hitCounts().get("fallback"));
+    }
+
+    @Test
+    public void optimizeMovesSelectiveChecksFirst() {
+        DecisionTable<Message, String> table = new DecisionTable<>(m -> m.type, Arrays.asList(
+            new DecisionTable.Rule<Message, String>("rule", 1, "A",
+                DecisionTable.Check.startsWith("data", m -> m.data, "p"),
+                DecisionTable.Check.endsWith("data", m -> m.data, "post"))),
+            false, 0);
+
+        for (int i = 0; i < 10_000; i++) {
+            table.match(new Message(1, i % 100 == 0 ? "ppost" : "pxx"));
+        }
+        table.optimize();
+
+        assertEquals(Arrays.asList("data endsWith post", "data startsWith p"), table.checkOrder("rule"));
+        assertEquals("A", table.match(new Message(1, "ppost")));
+    }
+
+    @Test
+    public void exclusiveTablesPutHotRulesFirst() {
+        DecisionTable<Message, String> table = new DecisionTable<>(m -> m.type, Arrays.asList(
+            new DecisionTable.Rule<Message, String>("cold", 1, "A",
+                DecisionTable.Check.startsWith("data", m -> m.data, "cold")),
+            new DecisionTable.Rule<Message, String>("hot", 1, "B",
+                DecisionTable.Check.startsWith("data", m -> m.data, "hot"))),
+            true, 0);
+
+        for (int i = 0; i < 100; i++) {
+            table.match(new Message(1, "hot"));
+        }
+        table.optimize();
+
+        assertEquals("B", table.match(new Message(1, "hot")));
+        assertEquals("A", table.match(new Message(1, "cold")));
+        assertEquals(Long.valueOf(101), table.hitCounts().get("hot"));
+    }
+
+    @Test
+    public void inlineChecksWithSameKeyAreShared() {
+        AtomicInteger reads = new AtomicInteger();
+        DecisionTable<Message, String> table = new DecisionTable<>(m -> m.type, Arrays.asList(
+            new DecisionTable.Rule<Message, String>("pre-post", 1, "A",
+                DecisionTable.Check.startsWith("data", m -> {
+                    reads.incrementAndGet();
+                    return m.data;
+                }, "pre"),
+                DecisionTable.Check.endsWith("data", m -> m.data, "post")),
+            new DecisionTable.Rule<Message, String>("pre-end", 1, "B",
+                DecisionTable.Check.startsWith("data", m -> {
+                    reads.incrementAndGet();
+                    return m.data;
+                }, "pre"),
+                DecisionTable.Check.endsWith("data", m -> m.data, "end")),
+            new DecisionTable.Rule<Message, String>("pre", null, "C",
+                DecisionTable.Check.startsWith("data", m -> {
+                    reads.incrementAndGet();
+                    return m.data;
+                }, "pre"))),
+            false, 0);
+
+        // 三个前缀条件按 key 合并为一个
+        assertEquals(3, table.checkCount());
+        assertEquals("C", table.match(new Message(1, "pre-x")));
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    public void checksWithDifferentKeysStayDistinct() {
+        DecisionTable<Message, String> table = new DecisionTable<>(m -> m.type, Arrays.asList(
+            new DecisionTable.Rule<Message, String>("even", 1, "A",
+                DecisionTable.Check.isTrue("even length", m -> m.data.length() % 2 == 0)),
+            new DecisionTable.Rule<Message, String>("long", 1, "B",
+                DecisionTable.Check.isTrue("long", m -> m.data.length() > 4))),
+            false, 0);
+
+        assertEquals(2, table.checkCount());
+        assertEquals("A", table.match(new Message(1, "ab")));
+        assertEquals("B", table.match(new Message(1, "abcde")));
+        assertNull(table.match(new Message(1, "abc")));
+    }
+}
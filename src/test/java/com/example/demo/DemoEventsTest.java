@@ -0,0 +1,81 @@
+package com.example.demo;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class DemoEventsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsLockAndCacheEvents() throws Exception {
+        Path dump = Files.createTempFile("demo-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.example.demo.LockAcquire").withThreshold(Duration.ZERO).withStackTrace();
+            recording.enable("com.example.demo.CacheOperation");
+            recording.start();
+
+            Object monitor = new Object();
+            DemoEvents.LockAcquireEvent wait = DemoEvents.beginLock("test.monitor");
+            synchronized (monitor) {
+                DemoEvents.lockAcquired(wait);
+            }
+            new PerformanceIssuesDemo().potentialMemoryLeak("jfr-key", "value");
+
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        Files.deleteIfExists(dump);
+
+        List<RecordedEvent> locks = events.stream()
+            .filter(e -> e.getEventType().getName().equals("com.example.demo.LockAcquire"))
+            .collect(Collectors.toList());
+        assertEquals(1, locks.size());
+        assertEquals("test.monitor", locks.get(0).getString("lockName"));
+        assertNotNull(locks.get(0).getStackTrace());
+
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("com.example.demo.CacheOperation")
+            && "jfr-key".equals(e.getString("key"))));
+    }
+
+    @Test
+    public void fileIoEventRecordsEncodedBytes() throws Exception {
+        Path dump = Files.createTempFile("demo-events", ".jfr");
+        Path output = folder.getRoot().toPath().resolve("output.txt");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.example.demo.FileIo").withThreshold(Duration.ZERO);
+            recording.start();
+            new PerformanceIssuesDemo().inefficientIO(output.toFile());
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        Files.deleteIfExists(dump);
+        long size = Files.size(output);
+
+        RecordedEvent write = events.stream()
+            .filter(e -> e.getEventType().getName().equals("com.example.demo.FileIo"))
+            .filter(e -> "write".equals(e.getString("operation")))
+            .findFirst()
+            .orElseThrow(AssertionError::new);
+        assertEquals(output.toString(), write.getString("path"));
+        assertEquals(size, write.getLong("bytes"));
+        assertTrue(write.getBoolean("succeeded"));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.demo;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class DirectBufferPoolTest {
+
+    private static final int KB = 1024;
+
+    @Test
+    public void releasedBuffersAreReusedBySizeClass() {
+        DirectBufferPool pool = new DirectBufferPool(4 * KB, 64 * KB, 128 * KB,
+            DirectBufferPool.AcquirePolicy.FAIL_FAST, 0);
+
+        DirectBufferPool.Lease first = pool.acquire(5 * KB);
+        assertTrue(first.buffer().isDirect());
+        assertEquals(8 * KB, first.buffer().capacity());
+        assertEquals(5 * KB, first.buffer().limit());
+        first.close();
+
+        try (DirectBufferPool.Lease second = pool.acquire(7 * KB)) {
+            assertEquals(7 * KB, second.buffer().limit());
+        }
+
+        DirectBufferPool.Stats stats = pool.stats();
+        assertEquals(2, stats.acquisitions);
+        assertEquals(1, stats.poolHits);
+        assertEquals(1, stats.allocations);
+        assertEquals(8 * KB, stats.idleBytes);
+        assertEquals(0, stats.inUseBytes());
+    }
+
+    @Test
+    public void retainedLeaseReturnsOnLastRelease() {
+        DirectBufferPool pool = new DirectBufferPool(4 * KB, 64 * KB, 128 * KB,
+            DirectBufferPool.AcquirePolicy.FAIL_FAST, 0);
+
+        DirectBufferPool.Lease lease = pool.acquire(4 * KB).retain();
+        lease.release();
+        assertEquals(4 * KB, pool.stats().inUseBytes());
+        lease.release();
+        assertEquals(0, pool.stats().inUseBytes());
+
+        try {
+            lease.buffer();
+            fail("released lease must not expose its buffer");
+        } catch (IllegalStateException expected) {
+            // 预期异常
+        }
+    }
+
+    @Test
+    public void failFastWhenBudgetExhausted() {
+        DirectBufferPool pool = new DirectBufferPool(4 * KB, 64 * KB, 64 * KB,
+            DirectBufferPool.AcquirePolicy.FAIL_FAST, 0);
+
+        try (DirectBufferPool.Lease held = pool.acquire(64 * KB)) {
+            pool.acquire(4 * KB);
+            fail("budget should be exhausted");
+        } catch (IllegalStateException expected) {
+            assertEquals(1, pool.stats().failures);
+        }
+    }
+
+    @Test
+    public void idleBuffersOfOtherClassesAreTrimmed() {
+        DirectBufferPool pool = new DirectBufferPool(4 * KB, 64 * KB, 64 * KB,
+            DirectBufferPool.AcquirePolicy.FAIL_FAST, 0);
+
+        pool.acquire(32 * KB).close();
+        pool.acquire(32 * KB).close();
+        try (DirectBufferPool.Lease large = pool.acquire(64 * KB)) {
+            assertEquals(64 * KB, large.buffer().capacity());
+        }
+        assertEquals(1, pool.stats().trimmed);
+    }
+
+    @Test
+    public void blockingAcquireWaitsForRelease() throws Exception {
+        DirectBufferPool pool = new DirectBufferPool(4 * KB, 64 * KB, 64 * KB,
+            DirectBufferPool.AcquirePolicy.BLOCK, 5000);
+        DirectBufferPool.Lease held = pool.acquire(64 * KB);
+        CountDownLatch acquired = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+
+        Thread waiter = new Thread(() -> {
+            try (DirectBufferPool.Lease lease = pool.acquire(64 * KB)) {
+                acquired.countDown();
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        });
+        waiter.start();
+
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        held.close();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join();
+        assertNull(error.get());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguousAndCoverAllValues() {
+        assertEquals(0, LatencyHistogram.indexOf(0));
+        long[] samples = {1, 63, 64, 127, 128, 129, 1000, 123_456_789L, Long.MAX_VALUE};
+        for (long value : samples) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value + " below bucket", LatencyHistogram.lowestValueAt(index) <= value);
+            assertTrue(value + " above bucket", LatencyHistogram.highestValueAt(index) >= value);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(LatencyHistogram.highestValueAt(i) + 1, LatencyHistogram.lowestValueAt(i + 1));
+        }
+    }
+
+    @Test
+    public void percentilesStayWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100_000, snapshot.count());
+        assertEquals(100_000_000L, snapshot.max());
+        assertEquals(50_000_500.0, snapshot.mean(), 1e-6);
+        assertEquals(50_000_000, snapshot.valueAtPercentile(50), 50_000_000 / 64.0);
+        assertEquals(99_000_000, snapshot.valueAtPercentile(99), 99_000_000 / 64.0);
+        assertEquals(99_900_000, snapshot.valueAtPercentile(99.9), 99_900_000 / 64.0);
+        assertEquals(100_000_000L, snapshot.valueAtPercentile(100));
+    }
+
+    @Test
+    public void concurrentRecordingLosesNothing() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 50_000; i++) {
+                    histogram.record(random.nextInt(1_000_000));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(200_000, histogram.snapshotAndReset().count());
+        assertEquals(0, histogram.snapshot().count());
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.demo;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LineIngestorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final DirectBufferPool pool = new DirectBufferPool(4 * 1024, 16 * 1024, 1024 * 1024,
+        DirectBufferPool.AcquirePolicy.FAIL_FAST, 0);
+
+    private Path write(String content) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private List<String> readLines(Path file, int queueCapacity) {
+        List<String> lines = new ArrayList<>();
+        try (LineIngestor.Session session = new LineIngestor(pool, 4 * 1024, queueCapacity).open(file)) {
+            long count = session.forEachBatch(batch -> {
+                assertEquals(lines.size() + 1, batch.firstLineNumber());
+                for (int i = 0; i < batch.size(); i++) {
+                    lines.add(batch.line(i));
+                }
+            });
+            assertEquals(lines.size(), count);
+            assertEquals(count, session.linesRead());
+        }
+        return lines;
+    }
+
+    @Test
+    public void splitsLinesAcrossChunkBoundaries() throws IOException {
+        StringBuilder content = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String line = "line-" + i + (i % 3 == 0 ? " 中文" : "");
+            expected.add(line);
+            content.append(line).append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        expected.add("no trailing newline");
+        content.append("no trailing newline");
+
+        assertEquals(expected, readLines(write(content.toString()), 1));
+        assertEquals(0, pool.stats().inUseBytes());
+    }
+
+    @Test
+    public void growsBufferForLongLines() throws IOException {
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            longLine.append((char) ('a' + i % 26));
+        }
+        List<String> lines = readLines(write("short\n" + longLine + "\nend\n"), 2);
+
+        assertEquals(3, lines.size());
+        assertEquals(longLine.toString(), lines.get(1));
+        assertEquals("end", lines.get(2));
+    }
+
+    @Test
+    public void lineLongerThanLargestBufferFails() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            content.append('x');
+        }
+        try {
+            readLines(write(content + "\n"), 1);
+            fail("line exceeding pool max size must fail");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getCause().getMessage().contains("longer than"));
+        }
+        assertEquals(0, pool.stats().inUseBytes());
+    }
+
+    @Test
+    public void closeMidStreamReleasesBuffers() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            content.append("row ").append(i).append('\n');
+        }
+        LineIngestor.Session session = new LineIngestor(pool, 4 * 1024, 2).open(write(content.toString()));
+        try (LineIngestor.LineBatch first = session.take()) {
+            assertEquals("row 0", first.line(0));
+            assertEquals(5, first.lineBuffer(0).remaining());
+        }
+
+        session.close();
+        session.close();
+
+        assertEquals(0, pool.stats().inUseBytes());
+        assertTrue(session.bytesRead() < content.length());
+    }
+
+    @Test
+    public void closeWhileWaitingForBufferIsCancellation() throws Exception {
+        // 预算只够一块：读取线程拿着第一块时申请下一块会一直等待
+        DirectBufferPool tight = new DirectBufferPool(4 * 1024, 16 * 1024, 16 * 1024,
+            DirectBufferPool.AcquirePolicy.BLOCK, 30_000);
+        StringBuilder content = new StringBuilder();
+        while (content.length() < 64 * 1024) {
+            content.append("some line of text\n");
+        }
+        Path file = write(content.toString());
+        Path dump = Files.createTempFile("ingest-events", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.example.demo.FileIo").withThreshold(Duration.ZERO);
+            recording.start();
+            LineIngestor.Session session = new LineIngestor(tight, 16 * 1024, 4).open(file);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (tight.stats().waits == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, tight.stats().waits);
+            session.close();
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        Files.deleteIfExists(dump);
+        RecordedEvent ingest = events.stream()
+            .filter(e -> e.getEventType().getName().equals("com.example.demo.FileIo"))
+            .filter(e -> file.toString().equals(e.getString("path")))
+            .findFirst()
+            .orElseThrow(AssertionError::new);
+        assertTrue(ingest.getBoolean("succeeded"));
+        assertEquals(0, tight.stats().inUseBytes());
+    }
+
+    @Test
+    public void missingFileFailsOnOpen() {
+        try {
+            new LineIngestor(pool, 4 * 1024, 1).open(folder.getRoot().toPath().resolve("missing.txt"));
+            fail("missing file must fail on open");
+        } catch (UncheckedIOException expected) {
+            // 预期异常
+        }
+        assertNull(CodeIssuesDemo.readFirstLine(folder.getRoot().toPath().resolve("missing.txt")));
+    }
+}
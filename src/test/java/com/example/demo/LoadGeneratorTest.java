@@ -0,0 +1,81 @@
+package com.example.demo;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LoadGeneratorTest {
+
+    @Test
+    public void fixedRateIssuesScheduledOperations() {
+        AtomicInteger calls = new AtomicInteger();
+        LoadGenerator.Report report = LoadGenerator.fixedRate("count", calls::incrementAndGet, 2000, 2)
+            .warmup(50, TimeUnit.MILLISECONDS)
+            .duration(200, TimeUnit.MILLISECONDS)
+            .run();
+
+        assertEquals(400, report.operations);
+        assertEquals(0, report.errors);
+        assertTrue(calls.get() >= 400);
+        assertEquals(400, report.response.count());
+    }
+
+    @Test
+    public void stalledScenarioShowsQueueingDelay() {
+        LoadGenerator.Report report = LoadGenerator.fixedRate("slow", () -> Thread.sleep(10), 200, 1)
+            .warmup(0, TimeUnit.MILLISECONDS)
+            .duration(300, TimeUnit.MILLISECONDS)
+            .run();
+
+        // 服务时间约10ms，但计划间隔只有5ms，后面的请求越排越久
+        assertTrue(report.response.valueAtPercentile(99) > 2 * report.service.valueAtPercentile(99));
+        assertTrue(report.elapsedNanos > TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    public void fixedConcurrencyCountsErrors() {
+        AtomicInteger calls = new AtomicInteger();
+        LoadGenerator.Report report = LoadGenerator.fixedConcurrency("flaky", () -> {
+            if (calls.incrementAndGet() % 2 == 0) {
+                throw new IllegalStateException("boom");
+            }
+        }, 2).warmup(0, TimeUnit.MILLISECONDS).duration(50, TimeUnit.MILLISECONDS).run();
+
+        assertTrue(report.operations > 0);
+        assertEquals(report.operations / 2.0, report.errors, 1.0 + report.operations * 0.01);
+        assertTrue(report.throughput() > 0);
+    }
+
+    @Test
+    public void exportsCsvAndJson() {
+        LoadGenerator.Report report = LoadGenerator.fixedConcurrency("a,\"b\"", () -> { }, 1)
+            .warmup(0, TimeUnit.MILLISECONDS).duration(20, TimeUnit.MILLISECONDS).run();
+
+        String[] csv = LoadGenerator.toCsv(Arrays.asList(report, report)).split("\n");
+        assertEquals(3, csv.length);
+        assertEquals(LoadGenerator.Report.CSV_HEADER, csv[0]);
+        assertTrue(csv[1].startsWith("\"a,\"\"b\"\"\",FIXED_CONCURRENCY,1,"));
+        // 场景名里的逗号被引号包住，其余列与表头一一对应
+        String[] columns = csv[1].substring(csv[1].indexOf("\",") + 2).split(",");
+        assertEquals(LoadGenerator.Report.CSV_HEADER.split(",").length - 1, columns.length);
+        assertEquals(String.valueOf(report.service.max()), columns[14]);
+
+        String json = LoadGenerator.toJson(Arrays.asList(report));
+        assertTrue(json.contains("\"scenario\":\"a,\\\"b\\\"\""));
+        assertTrue(json.contains("\"latencyNanos\":{\"p50\":"));
+    }
+
+    @Test
+    public void runLoadRejectsUnknownScenario() {
+        try {
+            CodeIssuesDemo.runLoad(new String[] {"noSuchScenario"});
+            fail("unknown scenario must be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("complexMethod"));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MathKernelsTest {
+
+    @Test
+    public void gridMatchesDirectSqrt() {
+        int rows = 300;
+        int cols = 250;
+        double[] sequential = MathKernels.sqrtProductGrid(rows, cols, Integer.MAX_VALUE);
+        double[] parallel = MathKernels.sqrtProductGrid(rows, cols, 1);
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                double expected = Math.sqrt(i * j);
+                assertEquals(expected, sequential[i * cols + j], Math.ulp(expected) * 4);
+            }
+        }
+        assertArrayEquals(sequential, parallel, 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeGridSizeIsRejected() {
+        MathKernels.sqrtProductGrid(-1, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void overflowingGridSizeIsRejected() {
+        // 65536 * 65537 按 int 相乘会回绕成一个很小的正数
+        MathKernels.sqrtProductGrid(65536, 65537);
+    }
+
+    @Test
+    public void trigTableStaysWithinErrorBound() {
+        MathKernels.TrigTable table = new MathKernels.TrigTable(4096);
+        double worst = 0;
+        for (double x = -20; x < 20; x += 0.001) {
+            worst = Math.max(worst, Math.abs(table.sin(x) - Math.sin(x)));
+            worst = Math.max(worst, Math.abs(table.cos(x) - Math.cos(x)));
+        }
+        assertTrue("worst error " + worst, worst <= table.maxError() + 1e-12);
+    }
+
+    @Test
+    public void demoMethodsReturnPrimitiveResults() {
+        PerformanceIssuesDemo demo = new PerformanceIssuesDemo();
+        double[] constants = demo.unnecessaryComputations();
+
+        assertEquals(1000, constants.length);
+        assertEquals(Math.sin(Math.PI) + Math.cos(Math.E), constants[999], 0.0);
+        assertEquals(10_000, demo.inefficientLoop().length);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void metricsAreCreatedOncePerName() {
+        MetricsRegistry registry = new MetricsRegistry("test.once");
+        MetricsRegistry.Counter counter = registry.counter("requests");
+        counter.increment();
+        registry.counter("requests").add(4);
+
+        assertSame(counter, registry.counter("requests"));
+        assertEquals(5, counter.getCount());
+        try {
+            registry.timer("requests");
+            fail("name already used by a counter");
+        } catch (IllegalArgumentException expected) {
+            // 预期异常
+        }
+        try {
+            registry.counter("bad name");
+            fail("names with spaces are rejected");
+        } catch (IllegalArgumentException expected) {
+            // 预期异常
+        }
+    }
+
+    @Test
+    public void exportsToJmxBeforeAndAfterCreation() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        MetricsRegistry registry = new MetricsRegistry("test.jmx");
+        registry.counter("early").add(3);
+        registry.exportTo(server);
+        AtomicLong depth = new AtomicLong(7);
+        registry.gauge("queue.depth", depth::get);
+        MetricsRegistry.Timer timer = registry.timer("db.call");
+        timer.record(2_000_000);
+        timer.record(4_000_000);
+
+        assertEquals(3L, server.getAttribute(registry.objectName("early"), "Count"));
+        assertEquals(7L, server.getAttribute(registry.objectName("queue.depth"), "Value"));
+        ObjectName timerName = new ObjectName("test.jmx:type=Timer,name=db.call");
+        assertEquals(2L, server.getAttribute(timerName, "Count"));
+        assertEquals(4_000_000L, server.getAttribute(timerName, "MaxNanos"));
+
+        // 同名仪表重新注册时替换回调，MBean 不变
+        registry.gauge("queue.depth", () -> 42);
+        assertEquals(42L, server.getAttribute(registry.objectName("queue.depth"), "Value"));
+    }
+
+    @Test
+    public void textSnapshotIsSortedAndPeriodic() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry("test.text");
+        registry.counter("b.count").increment();
+        registry.gauge("a.size", () -> 12);
+        registry.timer("c.latency").record(1_500_000);
+
+        String[] lines = registry.snapshot().split("\n");
+        assertEquals("gauge a.size 12", lines[0]);
+        assertEquals("counter b.count 1", lines[1]);
+        assertTrue(lines[2], lines[2].startsWith("timer c.latency count=1 mean=1.500ms"));
+
+        CountDownLatch reported = new CountDownLatch(2);
+        AtomicReference<String> last = new AtomicReference<>();
+        ScheduledFuture<?> reporting = registry.startReporting(10, TimeUnit.MILLISECONDS, snapshot -> {
+            last.set(snapshot);
+            reported.countDown();
+        });
+        try {
+            assertTrue(reported.await(5, TimeUnit.SECONDS));
+            assertTrue(last.get().contains("counter b.count 1"));
+        } finally {
+            reporting.cancel(false);
+        }
+    }
+
+    @Test
+    public void demoCacheCountsHitsAndMisses() {
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        long hits = metrics.counter("cache.performance.hits").getCount();
+        long misses = metrics.counter("cache.performance.misses").getCount();
+        PerformanceIssuesDemo demo = new PerformanceIssuesDemo();
+
+        demo.potentialMemoryLeak("metrics-test-key", "value");
+        assertEquals("value", demo.getCached("metrics-test-key"));
+        assertNull(demo.getCached("metrics-test-missing"));
+
+        assertEquals(hits + 1, metrics.counter("cache.performance.hits").getCount());
+        assertEquals(misses + 1, metrics.counter("cache.performance.misses").getCount());
+        assertTrue(metrics.snapshot().contains("gauge cache.performance.size "));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class PasswordHashingServiceTest {
+
+    @Test
+    public void hashThenVerify() throws Exception {
+        try (PasswordHashingService service = new PasswordHashingService(2, 16, 10_000)) {
+            String stored = service.hash("correct horse".toCharArray()).get();
+
+            assertTrue(stored.startsWith("pbkdf2-sha256$10000$"));
+            assertTrue(service.verify("correct horse".toCharArray(), stored).get());
+            assertFalse(service.verify("wrong horse".toCharArray(), stored).get());
+            assertFalse(service.verify("correct horse".toCharArray(), "garbage").get());
+            assertFalse(service.verify("correct horse".toCharArray(), "pbkdf2-sha256$999999999$AA$AA").get());
+            // 格式错误的哈希串也在线程池中做一次推导
+            assertEquals(5, service.stats().completed);
+        }
+    }
+
+    @Test
+    public void calibrationRaisesIterationsAndFlagsOldHashes() throws Exception {
+        try (PasswordHashingService service = new PasswordHashingService(1, 4, 10_000)) {
+            String old = service.hash("secret".toCharArray()).get();
+            int iterations = service.calibrate(20);
+
+            assertTrue(iterations >= 10_000);
+            assertEquals(iterations > 10_000, service.needsRehash(old));
+            assertTrue(service.verify("secret".toCharArray(), old).get());
+        }
+    }
+
+    @Test
+    public void missingHashesCostADerivation() throws Exception {
+        try (PasswordHashingService service = new PasswordHashingService(1, 4, 10_000)) {
+            assertFalse(service.verify("pw".toCharArray(), null).get());
+            assertFalse(service.verify("pw".toCharArray(), "pbkdf2-sha256$10000$!!$AA").get());
+
+            assertEquals(2, service.stats().completed);
+            assertTrue(service.needsRehash(null));
+        }
+    }
+
+    @Test
+    public void asyncCalibrationRunsOnHashingThreads() throws Exception {
+        try (PasswordHashingService service = new PasswordHashingService(1, 4, 10_000)) {
+            CompletableFuture<Integer> calibrated = service.calibrateAsync(20);
+            // 单线程池按提交顺序执行，这次哈希一定在校准之后
+            String stored = service.hash("pw".toCharArray()).get();
+
+            assertTrue(stored.startsWith("pbkdf2-sha256$" + calibrated.get() + "$"));
+            assertEquals(calibrated.get().intValue(), service.getIterations());
+        }
+    }
+
+    @Test
+    public void overloadIsRejectedInsteadOfQueued() throws Exception {
+        try (PasswordHashingService service = new PasswordHashingService(1, 1, 200_000)) {
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(service.hash("pw".toCharArray()));
+            }
+            int rejected = 0;
+            for (CompletableFuture<String> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof RejectedExecutionException);
+                    rejected++;
+                }
+            }
+            assertTrue(rejected >= 8);
+            assertEquals(rejected, service.stats().rejected);
+        }
+    }
+
+    @Test
+    public void demoRejectsPasswordsBelowPolicy() {
+        CompletableFuture<String> result = new SecurityIssuesDemo().hashPassword("abc");
+        assertTrue(result.isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 克隆与更新开销的简单对比：持久化向量 vs ArrayList 深拷贝
+ *
+ * 不是单元测试，手动运行：
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.demo.PersistentVectorBenchmark
+ */
+public class PersistentVectorBenchmark {
+
+    private static final int[] SIZES = {1_000, 100_000, 1_000_000};
+    private static final int ROUNDS = 2_000;
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        for (int size : SIZES) {
+            List<String> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add("item" + i);
+            }
+            PersistentVector<String> vector = PersistentVector.of(list);
+
+            // 预热
+            runArrayList(list, ROUNDS);
+            runVector(vector, ROUNDS);
+
+            long arrayListNanos = runArrayList(list, ROUNDS);
+            long vectorNanos = runVector(vector, ROUNDS);
+            System.out.printf("size=%,d  ArrayList copy+set: %,d ns/op  PersistentVector clone+with: %,d ns/op%n",
+                size, arrayListNanos / ROUNDS, vectorNanos / ROUNDS);
+        }
+    }
+
+    private static long runArrayList(List<String> source, int rounds) {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            List<String> copy = new ArrayList<>(source);
+            copy.set(r % copy.size(), "updated");
+            sink = copy;
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runVector(PersistentVector<String> source, int rounds) {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            PersistentVector<String> copy = source;
+            sink = copy.with(r % copy.size(), "updated");
+        }
+        return System.nanoTime() - start;
+    }
+}
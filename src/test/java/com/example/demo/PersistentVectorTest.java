@@ -0,0 +1,80 @@
+package com.example.demo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PersistentVectorTest {
+
+    private static final int LARGE = 40_000; // 超过 32 * 32 * 32，树至少有三层
+
+    @Test
+    public void appendAcrossTrieLevels() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < LARGE; i++) {
+            vector = vector.plus(i);
+            expected.add(i);
+        }
+        assertEquals(expected, vector);
+        assertEquals(expected, new ArrayList<>(vector));
+    }
+
+    @Test
+    public void updatesDoNotAffectEarlierVersions() {
+        PersistentVector<Integer> original = PersistentVector.empty();
+        for (int i = 0; i < 2000; i++) {
+            original = original.plus(i);
+        }
+        PersistentVector<Integer> updated = original.with(5, -5).with(1999, -1999).plus(2000);
+
+        assertEquals(Integer.valueOf(5), original.get(5));
+        assertEquals(Integer.valueOf(1999), original.get(1999));
+        assertEquals(2000, original.size());
+        assertEquals(Integer.valueOf(-5), updated.get(5));
+        assertEquals(Integer.valueOf(-1999), updated.get(1999));
+        assertEquals(2001, updated.size());
+    }
+
+    @Test
+    public void transientBuildsAndFreezes() {
+        PersistentVector<Integer> base = PersistentVector.of(Arrays.asList(1, 2, 3));
+        PersistentVector.Transient<Integer> builder = base.asTransient();
+        for (int i = 4; i <= LARGE; i++) {
+            builder.add(i);
+        }
+        builder.set(0, 100).set(LARGE - 1, -1);
+        PersistentVector<Integer> built = builder.persistent();
+
+        assertEquals(3, base.size());
+        assertEquals(Integer.valueOf(1), base.get(0));
+        assertEquals(LARGE, built.size());
+        assertEquals(Integer.valueOf(100), built.get(0));
+        assertEquals(Integer.valueOf(500), built.get(499));
+        assertEquals(Integer.valueOf(-1), built.get(LARGE - 1));
+
+        try {
+            builder.add(0);
+            fail("transient should be frozen after persistent()");
+        } catch (IllegalStateException expected) {
+            // 预期异常
+        }
+    }
+
+    @Test
+    public void clonedSnapshotsAreIndependent() throws CloneNotSupportedException {
+        AdvancedIssuesDemo.ShallowCloneIssue original =
+            new AdvancedIssuesDemo.ShallowCloneIssue(Arrays.asList("a", "b"));
+        AdvancedIssuesDemo.ShallowCloneIssue copy = original.clone();
+
+        copy.addItem("c");
+        copy.setItem(0, "z");
+
+        assertEquals(Arrays.asList("a", "b"), original.getItems());
+        assertEquals(Arrays.asList("z", "b", "c"), copy.getItems());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.demo;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ResourceCleanerTest {
+
+    @Test
+    public void explicitCloseReleasesExactlyOnce() {
+        ResourceCleaner cleaner = new ResourceCleaner(1);
+        AtomicInteger releases = new AtomicInteger();
+        Object owner = new Object();
+
+        ResourceCleaner.Handle handle = cleaner.register(owner, releases::incrementAndGet);
+        handle.close();
+        handle.close();
+
+        assertTrue(handle.isClosed());
+        assertEquals(1, releases.get());
+        assertEquals(1, cleaner.getClosedCount());
+        assertEquals(0, cleaner.getLeakCount());
+    }
+
+    @Test
+    public void unclosedHandleIsReportedWithAllocationSite() throws InterruptedException {
+        ResourceCleaner cleaner = new ResourceCleaner(1);
+        AtomicInteger releases = new AtomicInteger();
+        registerAndDrop(cleaner, releases);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (cleaner.getLeakCount() == 0 && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertEquals(1, cleaner.getLeakCount());
+        assertEquals(1, releases.get());
+        assertEquals(1, cleaner.getRecentLeaks().size());
+        assertTrue(cleaner.getRecentLeaks().get(0).getMessage().contains(Object.class.getName()));
+    }
+
+    private static void registerAndDrop(ResourceCleaner cleaner, AtomicInteger releases) {
+        cleaner.register(new Object(), releases::incrementAndGet);
+    }
+
+    @Test
+    public void badFinalizeIsClosedExplicitly() {
+        ResourceCleaner cleaner = ResourceCleaner.getDefault();
+        long closedBefore = cleaner.getClosedCount();
+        AdvancedIssuesDemo.BadFinalize closedResource;
+        try (AdvancedIssuesDemo.BadFinalize resource = new AdvancedIssuesDemo.BadFinalize()) {
+            assertFalse(resource.isClosed());
+            closedResource = resource;
+        }
+
+        assertTrue(closedResource.isClosed());
+        assertEquals(closedBefore + 1, cleaner.getClosedCount());
+        // 重复关闭不再计数
+        closedResource.close();
+        assertEquals(closedBefore + 1, cleaner.getClosedCount());
+    }
+
+    @Test
+    public void unclosedInnerClassLeaseReturnsToPool() throws InterruptedException {
+        DirectBufferPool pool = DirectBufferPool.getDefault();
+        long inUseBefore = pool.stats().inUseBytes();
+        createAndDrop();
+        assertEquals(inUseBefore + 1024 * 1024, pool.stats().inUseBytes());
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (pool.stats().inUseBytes() > inUseBefore && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertEquals(inUseBefore, pool.stats().inUseBytes());
+    }
+
+    private static void createAndDrop() {
+        new AdvancedIssuesDemo().new InnerClassMemoryLeak();
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class SpoolStorageTest {
+
+    private static final int THRESHOLD = 16 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SpoolStorage storage() {
+        DirectBufferPool pool = new DirectBufferPool(4 * 1024, 64 * 1024, 1024 * 1024,
+            DirectBufferPool.AcquirePolicy.FAIL_FAST, 0);
+        return new SpoolStorage(pool, THRESHOLD, folder.getRoot().toPath(), new ResourceCleaner(0));
+    }
+
+    private static byte[] payload(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1000];
+        int n;
+        while ((n = in.read(chunk)) > 0) {
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private long filesInFolder() throws IOException {
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void smallPayloadStaysInMemory() throws IOException {
+        byte[] data = "hello spool".getBytes(StandardCharsets.UTF_8);
+        try (SpoolStorage.Spool spool = storage().spool(data)) {
+            assertTrue(spool.isInMemory());
+            assertArrayEquals(data, readAll(spool.openStream()));
+            ByteBuffer view = spool.asByteBuffer();
+            assertTrue(view.isReadOnly());
+            assertEquals(data.length, view.remaining());
+            assertEquals(0, filesInFolder());
+        }
+    }
+
+    @Test
+    public void incrementalWritesSpillPastThreshold() throws IOException {
+        byte[] data = payload(50_000);
+        SpoolStorage.Spool spool = storage().create();
+        for (int offset = 0; offset < data.length; offset += 3000) {
+            spool.write(data, offset, Math.min(3000, data.length - offset));
+        }
+
+        assertFalse(spool.isInMemory());
+        assertEquals(data.length, spool.size());
+        assertArrayEquals(data, readAll(spool.openStream()));
+        ByteBuffer mapped = spool.asByteBuffer();
+        byte[] fromMap = new byte[mapped.remaining()];
+        mapped.get(fromMap);
+        assertArrayEquals(data, fromMap);
+
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            Path file = files.findFirst().orElseThrow(AssertionError::new);
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+        }
+
+        spool.close();
+        assertEquals(0, filesInFolder());
+        try {
+            spool.openStream();
+            fail("closed spool must not be readable");
+        } catch (IllegalStateException expected) {
+            // 预期异常
+        }
+    }
+
+    @Test
+    public void largeExpectedSizeGoesStraightToFile() throws IOException {
+        byte[] data = payload(THRESHOLD + 1);
+        try (SpoolStorage.Spool spool = storage().spool(data)) {
+            assertFalse(spool.isInMemory());
+            assertTrue(Arrays.equals(data, readAll(spool.openStream())));
+        }
+    }
+
+    @Test
+    public void viewsDoNotSeeReusedBufferAfterClose() throws IOException {
+        SpoolStorage storage = storage();
+        byte[] first = payload(1000);
+        SpoolStorage.Spool spool = storage.spool(first);
+        ByteBuffer view = spool.asByteBuffer();
+        InputStream stream = spool.openStream();
+        spool.close();
+
+        // 下一个句柄会复用刚归还的缓冲区
+        try (SpoolStorage.Spool next = storage.spool(new byte[1000])) {
+            byte[] copy = new byte[view.remaining()];
+            view.get(copy);
+            assertArrayEquals(first, copy);
+            try {
+                stream.read();
+                fail("stream of a closed spool must not be readable");
+            } catch (IOException expected) {
+                // 预期异常
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void thresholdAbovePoolMaximumIsRejected() {
+        DirectBufferPool pool = new DirectBufferPool(4 * 1024, 64 * 1024, 1024 * 1024,
+            DirectBufferPool.AcquirePolicy.FAIL_FAST, 0);
+        new SpoolStorage(pool, 128 * 1024, folder.getRoot().toPath(), new ResourceCleaner(0));
+    }
+}
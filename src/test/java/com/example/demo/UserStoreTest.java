@@ -0,0 +1,248 @@
+package com.example.demo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class UserStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void storesAndFindsUsers() {
+        try (UserStore store = UserStore.inMemory(4, 64)) {
+            store.put("alice", "alice@example.com");
+            store.put("bob", null);
+            UserStore.View view = store.newView();
+
+            assertTrue(store.find("alice", view));
+            assertEquals("alice", view.getUsername());
+            assertEquals("alice@example.com", view.getEmail());
+            assertTrue(view.emailEquals("alice@example.com"));
+            assertFalse(view.emailEquals("alice@example.org"));
+            assertEquals("<alice@example.com", view.appendEmail(new StringBuilder("<")).toString());
+
+            assertTrue(store.find("bob", view));
+            assertNull(view.getEmail());
+            assertEquals(-1, view.emailLength());
+            assertTrue(view.emailEquals(null));
+
+            assertFalse(store.find("carol", view));
+            assertFalse(view.isPresent());
+            assertEquals(2, store.size());
+        }
+    }
+
+    @Test
+    public void encodesUtf8LikeString() {
+        String[] samples = {"", "ascii", "中文用户", "emoji😀", "lone\uD800surrogate", "é߿ࠀ￿"};
+        try (UserStore store = UserStore.inMemory(16, 16)) {
+            for (String sample : samples) {
+                assertEquals(sample, sample.getBytes(StandardCharsets.UTF_8).length, UserStore.utf8Length(sample));
+                store.put("user-" + sample, sample);
+            }
+            UserStore.View view = store.newView();
+            for (String sample : samples) {
+                assertTrue(sample, store.find("user-" + sample, view));
+                String expected = new String(sample.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+                assertEquals(expected, view.getEmail());
+            }
+        }
+    }
+
+    @Test
+    public void overwriteAppendsAndTracksGarbage() {
+        try (UserStore store = UserStore.inMemory(4, 64)) {
+            store.put("alice", "old@example.com");
+            store.put("alice", "new@example.com");
+            UserStore.View view = store.newView();
+
+            assertTrue(store.find("alice", view));
+            assertEquals("new@example.com", view.getEmail());
+            assertEquals(1, store.size());
+            assertEquals(8 + 5 + 15, store.garbageBytes());
+        }
+    }
+
+    @Test
+    public void growsIndexAndArena() {
+        try (UserStore store = UserStore.inMemory(1, 16)) {
+            for (int i = 0; i < 20_000; i++) {
+                store.put("user" + i, "user" + i + "@example.com");
+            }
+            store.put("user7", "changed@example.com");
+            UserStore.View view = store.newView();
+            for (int i = 0; i < 20_000; i += 7) {
+                assertTrue(store.find("user" + i, view));
+                assertTrue(view.usernameEquals("user" + i));
+            }
+            assertTrue(store.find("user7", view));
+            assertEquals("changed@example.com", view.getEmail());
+            assertEquals(20_000, store.size());
+        }
+    }
+
+    @Test
+    public void reopensPersistedStore() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("users.db");
+        try (UserStore store = UserStore.open(file, 2, 32)) {
+            for (int i = 0; i < 1000; i++) {
+                store.put("user" + i, "user" + i + "@example.com");
+            }
+        }
+
+        try (UserStore store = UserStore.open(file, 2, 32)) {
+            UserStore.View view = store.newView();
+            assertFalse(store.wasRecovered());
+            assertEquals(1000, store.size());
+            assertTrue(store.find("user999", view));
+            assertEquals("user999@example.com", view.getEmail());
+            store.put("user1000", "user1000@example.com");
+            assertTrue(store.find("user1000", view));
+        }
+    }
+
+    @Test
+    public void rejectsForeignFile() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, new byte[64]);
+        try {
+            UserStore.open(file, 1, 1);
+            fail("file without header must be rejected");
+        } catch (IllegalStateException expected) {
+            // 预期异常
+        }
+    }
+
+    @Test
+    public void unclosedStoreIsRebuiltFromRecords() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("users.db");
+        Path crashed = folder.getRoot().toPath().resolve("crashed.db");
+        try (UserStore store = UserStore.open(file, 2, 32)) {
+            for (int i = 0; i < 1000; i++) {
+                store.put("user" + i, "user" + i + "@example.com");
+            }
+            store.put("user7", "changed@example.com");
+            store.flush();
+            // 进程在此刻退出时磁盘上的样子
+            Files.copy(file, crashed);
+        }
+
+        try (FileChannel channel = FileChannel.open(crashed, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(32);
+            channel.read(header, 0);
+            int slots = header.getInt(8);
+            int dataEnd = header.getInt(16);
+            // 索引写坏，记录区末尾多出一条只写了长度的记录，记录区长度已经更新
+            channel.write(ByteBuffer.wrap(new byte[slots * 8]), 32);
+            ByteBuffer torn = ByteBuffer.allocate(8).putInt(1000).putInt(1000);
+            torn.flip();
+            channel.write(torn, 32L + slots * 8L + dataEnd);
+            ByteBuffer newEnd = ByteBuffer.allocate(4).putInt(dataEnd + 8);
+            newEnd.flip();
+            channel.write(newEnd, 16);
+        }
+
+        try (UserStore store = UserStore.open(crashed, 2, 32)) {
+            UserStore.View view = store.newView();
+            assertTrue(store.wasRecovered());
+            assertEquals(1000, store.size());
+            assertTrue(store.find("user999", view));
+            assertEquals("user999@example.com", view.getEmail());
+            assertTrue(store.find("user7", view));
+            assertEquals("changed@example.com", view.getEmail());
+            assertEquals(8 + 5 + 17, store.garbageBytes());
+            store.put("user1000", "user1000@example.com");
+        }
+        try (UserStore store = UserStore.open(crashed, 2, 32)) {
+            assertFalse(store.wasRecovered());
+            assertEquals(1001, store.size());
+        }
+    }
+
+    @Test
+    public void interruptedIndexGrowthIsResumed() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("users.db");
+        try (UserStore store = UserStore.open(file, 2, 32)) {
+            for (int i = 0; i < 10; i++) {
+                store.put("user" + i, "a-rather-long-email-address-for-user-" + i + "@example.com");
+            }
+        }
+
+        // 按 growIndex 的方式把 16 槽扩到 32 槽：搬完三个分块后，第四块复制到一半时退出
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file), 0, 32);
+        assertEquals(16, header.getInt(8));
+        int dataEnd = header.getInt(16);
+        int oldStart = 32 + 16 * 8;
+        int distance = 16 * 8;
+        byte[] content = Arrays.copyOf(Files.readAllBytes(file),
+            Math.max((int) Files.size(file), oldStart + distance + dataEnd));
+        int end = dataEnd;
+        for (int chunk = 0; chunk < 3; chunk++) {
+            System.arraycopy(content, oldStart + end - distance, content, oldStart + end, distance);
+            end -= distance;
+        }
+        assertTrue(end > distance);
+        System.arraycopy(content, oldStart + end - distance, content, oldStart + end, distance / 2);
+        ByteBuffer.wrap(content).putInt(20, end).putInt(24, 2).putInt(28, 32);
+        Files.write(file, content);
+
+        try (UserStore store = UserStore.open(file, 2, 32)) {
+            UserStore.View view = store.newView();
+            assertTrue(store.wasRecovered());
+            assertEquals(10, store.size());
+            for (int i = 0; i < 10; i++) {
+                assertTrue(store.find("user" + i, view));
+                assertEquals("a-rather-long-email-address-for-user-" + i + "@example.com", view.getEmail());
+            }
+        }
+        try (UserStore store = UserStore.open(file, 2, 32)) {
+            assertFalse(store.wasRecovered());
+            assertEquals(10, store.size());
+        }
+    }
+
+    @Test
+    public void demoStoreIsClosedCleanlyOnExit() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("demo-users.db");
+        Process process = new ProcessBuilder(
+            Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp", System.getProperty("java.class.path"),
+            "-Ddemo.users.storeFile=" + file,
+            "-Ddemo.users.expected=16",
+            DemoLifecycle.class.getName())
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(0, process.exitValue());
+
+        try (UserStore store = UserStore.open(file, 16, 32)) {
+            UserStore.View view = store.newView();
+            assertFalse(store.wasRecovered());
+            assertTrue(store.find("alice", view));
+            assertEquals("alice@example.com", view.getEmail());
+        }
+    }
+
+    /** 在子进程中使用演示存储后正常退出，由关闭钩子关闭存储 */
+    static final class DemoLifecycle {
+        public static void main(String[] args) {
+            SecurityIssuesDemo.userStore().put("alice", "alice@example.com");
+        }
+    }
+}